@@ -0,0 +1,725 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** Content addressed blob store under .gitlet/files. Blobs are named by
+ * the SHA-1 of their raw contents and stored behind a short header
+ * telling their format. Files of CHUNK_THRESHOLD bytes or more are split
+ * into content-defined chunks, each stored as a blob of its own, and
+ * stored as a manifest listing them, so versions of a large file share
+ * the chunks they have in common. Blobs written before the header was
+ * introduced hold the raw contents and sit directly in the blob folder,
+ * never in a shard or a pack, so where a blob is stored tells its format
+ * and no prefix of user data is ever taken for a header.
+ * @author Yizhang Lin
+ * */
+class Blobs {
+    /** magic bytes opening a blob stored as it is. */
+    static final byte[] RAW = {'g', 'l', 'r', '1'};
+    /** magic bytes opening a compressed blob. */
+    static final byte[] DEFLATED = {'g', 'l', 'z', '1'};
+    /** magic bytes opening a chunk manifest. */
+    static final byte[] CHUNKED = {'g', 'l', 'c', '1'};
+    /** smallest file stored in chunks. */
+    static final long CHUNK_THRESHOLD = 1 << 20;
+    /** files smaller than this are stored as they are, since they take
+     * a disk block either way. */
+    static final long RAW_BELOW = 4 << 10;
+    /** header length: magic plus raw length. */
+    static final int HEADER_LEN = RAW.length + 8;
+    /** buffer size used when streaming blob contents. */
+    static final int BUF_SIZE = 1 << 16;
+    /** largest blob kept in memory once read. */
+    static final int SMALL_BLOB = 64 << 10;
+    /** most bytes of small blobs kept in memory. */
+    static final long CACHE_BYTES = 16 << 20;
+    /** names of blob files. */
+    static final Pattern HASH_NAME = Pattern.compile("[0-9a-f]{40}");
+    /** name of the list of blobs stored in chunks. */
+    static final String MANIFESTS = "manifests";
+
+    /** initialize Blobs.
+     * @param blobDir folder holding the loose blobs
+     * @param blobPack pack holding the packed blobs
+     * @param manifestList list of the blobs stored in chunks
+     * @param scratchDir scratch folder of the repository
+     * */
+    Blobs(File blobDir, Pack blobPack, File manifestList, File scratchDir) {
+        dir = blobDir;
+        pack = blobPack;
+        manifests = manifestList;
+        scratch = scratchDir;
+    }
+
+    /** store a file, hashing and compressing it in a single pass. Small
+     * files are stored as they are, and so are files that deflate saves
+     * too little on, which are read a second time; checkout copies such
+     * blobs without decoding them. The blob is only written if no blob
+     * with that hash exists yet, and an existing one is freshened.
+     * @param f file to store
+     * @return hash string of the file
+     * */
+    String store(File f) {
+        return store(f, false, new long[1]);
+    }
+
+    /** store helper.
+     * @param f file to store
+     * @param replace whether a blob stored without a header counts as
+     * missing, so the file is stored again in the current format
+     * @param written receives the number of bytes written to the store
+     * @return hash string of the file
+     * */
+    private String store(File f, boolean replace, long[] written) {
+        File tmp = null;
+        File raw = null;
+        Trace.count(Trace.Counter.FILES_HASHED, 1);
+        try (Trace.Span span = Trace.begin("store")) {
+            if (f.length() >= CHUNK_THRESHOLD) {
+                return storeChunked(f, replace, written);
+            }
+            boolean deflate = f.length() >= RAW_BELOW;
+            tmp = File.createTempFile("blob", null, dir);
+            String hashName = write(f, tmp, deflate);
+            if (deflate && !saves(f.length(), tmp.length() - HEADER_LEN)) {
+                raw = File.createTempFile("blob", null, dir);
+                if (write(f, raw, false).equals(hashName)) {
+                    tmp.delete();
+                    tmp = raw;
+                }
+            }
+            if (!isStored(hashName, replace)) {
+                File dest = ObjectDir.create(dir, hashName);
+                if (Trace.isOn()) {
+                    Trace.count(Trace.Counter.BYTES_WRITTEN, tmp.length());
+                }
+                written[0] += tmp.length();
+                LockFile.move(tmp, dest);
+            }
+            return hashName;
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalStateException(excp);
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+            if (raw != null) {
+                raw.delete();
+            }
+        }
+    }
+
+    /** write the stored form of a file while hashing it.
+     * @param f file to store
+     * @param dest file the stored form is written to
+     * @param deflate whether to compress the contents
+     * @return hash string of the file
+     * @throws IOException on read or write failure
+     * @throws NoSuchAlgorithmException never
+     * */
+    private static String write(File f, File dest, boolean deflate)
+            throws IOException, NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("SHA-1");
+        byte[] buf = new byte[BUF_SIZE];
+        try (InputStream in = new FileInputStream(f);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(dest),
+                             BUF_SIZE))) {
+            writeHeader(out, deflate ? DEFLATED : RAW, f.length());
+            DeflaterOutputStream z = deflate ? new DeflaterOutputStream(out,
+                    new Deflater(Deflater.BEST_SPEED), BUF_SIZE) : null;
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+                if (z != null) {
+                    z.write(buf, 0, n);
+                } else {
+                    out.write(buf, 0, n);
+                }
+                Trace.count(Trace.Counter.BYTES_READ, n);
+            }
+            if (z != null) {
+                z.finish();
+            }
+        }
+        return toHex(md.digest());
+    }
+
+    /** check if compression is worth keeping.
+     * @param raw raw length
+     * @param deflated deflated length
+     * @return true if deflating saved at least an eighth
+     * */
+    private static boolean saves(long raw, long deflated) {
+        return deflated <= raw - raw / 8;
+    }
+
+    /** store a file as chunks and a manifest. Chunks already stored,
+     * by this file or any other, are freshened instead of written again.
+     * @param f file to store
+     * @param replace whether a blob stored without a header counts as
+     * missing
+     * @param written receives the number of bytes written to the store
+     * @return hash string of the file
+     * @throws IOException on read or write failure
+     * @throws NoSuchAlgorithmException never
+     * */
+    private String storeChunked(File f, boolean replace,
+                                       long[] written)
+            throws IOException, NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("SHA-1");
+        ByteArrayOutputStream list = new ByteArrayOutputStream();
+        DataOutputStream entries = new DataOutputStream(list);
+        long count = 0;
+        long total = 0;
+        try (InputStream in = new FileInputStream(f)) {
+            Chunker chunker = new Chunker(in);
+            for (byte[] c = chunker.next(); c != null; c = chunker.next()) {
+                md.update(c);
+                Trace.count(Trace.Counter.BYTES_READ, c.length);
+                String h = Utils.sha1(c);
+                if (!freshen(h, 0)) {
+                    byte[] stored = compress(c);
+                    ObjectDir.write(dir, h, stored);
+                    written[0] += stored.length;
+                }
+                Codec.writeHash(entries, h);
+                Codec.writeVarint(entries, c.length);
+                count += 1;
+                total += c.length;
+            }
+        }
+        String hashName = toHex(md.digest());
+        if (!isStored(hashName, replace)) {
+            ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(manifest);
+            out.write(CHUNKED);
+            out.writeLong(total);
+            Codec.writeVarint(out, count);
+            list.writeTo(out);
+            writeManifest(hashName, manifest.toByteArray());
+            written[0] += manifest.size();
+        }
+        return hashName;
+    }
+
+    /** check if a blob is stored, freshening it if it is.
+     * @param hash blob hash
+     * @param replace whether a blob stored without a header counts as
+     * missing
+     * @return true if the blob need not be written
+     * */
+    private boolean isStored(String hash, boolean replace) {
+        if (!replace) {
+            return freshen(hash, 0);
+        }
+        return ObjectDir.sharded(dir, hash).isFile()
+                || pack.contains(hash);
+    }
+
+    /** put bytes into the stored form of a blob, deflated unless they
+     * are small or deflate saves too little on them.
+     * @param data raw contents
+     * @return header and contents
+     * @throws IOException never
+     * */
+    private static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(stored);
+        if (data.length >= RAW_BELOW) {
+            writeHeader(out, DEFLATED, data.length);
+            DeflaterOutputStream z = new DeflaterOutputStream(out,
+                    new Deflater(Deflater.BEST_SPEED), BUF_SIZE);
+            z.write(data);
+            z.finish();
+            if (saves(data.length, stored.size() - HEADER_LEN)) {
+                return stored.toByteArray();
+            }
+            stored.reset();
+        }
+        writeHeader(out, RAW, data.length);
+        out.write(data);
+        return stored.toByteArray();
+    }
+
+    /** list the chunks of a blob.
+     * @param hash blob hash
+     * @return chunk hashes in order, empty for a blob stored whole
+     * */
+    List<String> chunks(String hash) {
+        if (isLegacy(dir,
+                ObjectDir.path(dir, hash))) {
+            return new ArrayList<String>();
+        }
+        try (InputStream in = stored(hash)) {
+            return manifest(in);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** list the chunks of a blob.
+     * @param stored stored bytes of the blob, with their header
+     * @return chunk hashes in order, empty for a blob stored whole
+     * */
+    static List<String> chunks(byte[] stored) {
+        try {
+            return manifest(new ByteArrayInputStream(stored));
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** check if a blob file holds a chunk manifest.
+     * @param f blob file with a header
+     * @return true for a manifest
+     * */
+    static boolean isChunked(File f) {
+        try (InputStream in = new FileInputStream(f)) {
+            return Arrays.equals(in.readNBytes(CHUNKED.length), CHUNKED);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** check if a loose blob file was written before blobs had a header.
+     * Such files sit directly in the blob folder and hold raw contents.
+     * @param dir blob folder
+     * @param f blob file
+     * @return true for a file without a header
+     * */
+    static boolean isLegacy(File dir, File f) {
+        return f.getParentFile().equals(dir);
+    }
+
+    /** write the header of a blob.
+     * @param out destination
+     * @param format RAW, DEFLATED or CHUNKED
+     * @param len length of the raw contents
+     * @throws IOException on write failure
+     * */
+    static void writeHeader(DataOutputStream out, byte[] format, long len)
+            throws IOException {
+        out.write(format);
+        out.writeLong(len);
+    }
+
+    /** mark a stored blob as just used, so garbage collection keeps it
+     * for another grace period even before anything refers to it. A
+     * packed blob freshens its pack, and a blob large enough to be
+     * stored in chunks freshens its chunks too.
+     * @param hash blob hash
+     * @param size raw size of the blob, if known, or 0
+     * @return false if the blob is not stored
+     * */
+    boolean freshen(String hash, long size) {
+        long now = System.currentTimeMillis();
+        File loose = ObjectDir.path(dir, hash);
+        if (!loose.setLastModified(now)) {
+            if (!pack.contains(hash)) {
+                return false;
+            }
+            pack.file().setLastModified(now);
+        }
+        if (size >= CHUNK_THRESHOLD) {
+            for (String c : chunks(hash)) {
+                freshen(c, 0);
+            }
+        }
+        return true;
+    }
+
+    /** list a blob as stored in chunks and write its manifest, both
+     * holding the lock on the list, so garbage collection never sees a
+     * stored manifest that is not listed.
+     * @param hash blob hash
+     * @param manifest stored bytes of the manifest
+     * */
+    void writeManifest(String hash, byte[] manifest) {
+        try (LockFile lock = LockFile.acquire(manifests)) {
+            readManifests();
+            try (OutputStream out = new FileOutputStream(manifests, true)) {
+                out.write((hash + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            ObjectDir.write(dir, hash, manifest);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** list the blobs stored in chunks.
+     * @return hashes of the listed blobs
+     * */
+    Set<String> manifests() {
+        try (LockFile lock = LockFile.acquire(manifests)) {
+            return readManifests();
+        }
+    }
+
+    /** read the list of blobs stored in chunks. A repository written
+     * before the list was kept is scanned once to build it. The caller
+     * holds the lock on the list.
+     * @return hashes of the listed blobs
+     * */
+    private Set<String> readManifests() {
+        HashSet<String> result = new HashSet<String>();
+        if (manifests.isFile()) {
+            for (String h : Utils.readContentsAsString(manifests)
+                    .split("\n")) {
+                if (!h.isEmpty()) {
+                    result.add(h);
+                }
+            }
+            return result;
+        }
+        ArrayList<String> all = new ArrayList<String>(
+                ObjectDir.list(dir));
+        all.addAll(pack.hashes());
+        for (String h : all) {
+            if (!chunks(h).isEmpty()) {
+                result.add(h);
+            }
+        }
+        StringBuilder s = new StringBuilder();
+        for (String h : result) {
+            s.append(h).append('\n');
+        }
+        LockFile.replace(manifests, scratch, s.toString());
+        return result;
+    }
+
+    /** drop the blobs that are no longer stored from the list of blobs
+     * stored in chunks. */
+    void pruneManifests() {
+        try (LockFile lock = LockFile.acquire(manifests)) {
+            StringBuilder s = new StringBuilder();
+            for (String h : readManifests()) {
+                if (exists(h)) {
+                    s.append(h).append('\n');
+                }
+            }
+            LockFile.replace(manifests, scratch, s.toString());
+        }
+    }
+
+    /** check if a blob exists.
+     * @param hash blob hash
+     * @return true if the blob is in the store
+     * */
+    boolean exists(String hash) {
+        return ObjectDir.path(dir, hash).isFile()
+                || pack.contains(hash);
+    }
+
+    /** open a blob for reading.
+     * @param hash blob hash
+     * @return stream over the raw contents of the blob
+     * */
+    InputStream open(String hash) {
+        try {
+            File loose = ObjectDir.path(dir, hash);
+            if (loose.isFile() && isLegacy(dir, loose)) {
+                return new BufferedInputStream(new FileInputStream(loose),
+                        BUF_SIZE);
+            }
+            return decode(stored(hash), hash);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** read past the header of a stored blob.
+     * @param in stored bytes of the blob, with their header
+     * @param hash blob hash, for error messages
+     * @return stream over the raw contents of the blob
+     * @throws IOException on read failure
+     * */
+    private InputStream decode(InputStream in, String hash)
+            throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] format = data.readNBytes(RAW.length);
+        if (Arrays.equals(format, CHUNKED)) {
+            List<String> parts = chunkList(data);
+            in.close();
+            Iterator<String> next = parts.iterator();
+            return new SequenceInputStream(new Enumeration<InputStream>() {
+                @Override
+                public boolean hasMoreElements() {
+                    return next.hasNext();
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    return open(next.next());
+                }
+            });
+        }
+        if (format.length < RAW.length) {
+            in.close();
+            throw new StorageException("Blob %s is corrupt.", hash);
+        }
+        data.readLong();
+        if (Arrays.equals(format, RAW)) {
+            return in;
+        } else if (Arrays.equals(format, DEFLATED)) {
+            return new InflaterInputStream(in);
+        }
+        in.close();
+        throw new StorageException("Blob %s is corrupt.", hash);
+    }
+
+    /** check that a stored blob holds the contents its hash names. A
+     * chunk manifest is checked through its chunks, which must be
+     * stored already.
+     * @param stored file holding the stored form of the blob
+     * @param hash blob hash
+     * @return true if the contents hash to the blob hash
+     * */
+    boolean matches(File stored, String hash) {
+        try (InputStream in = decode(new BufferedInputStream(
+                new FileInputStream(stored), BUF_SIZE), hash)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] buf = new byte[BUF_SIZE];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+            }
+            return toHex(md.digest()).equals(hash);
+        } catch (IOException excp) {
+            return false;
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** open the stored bytes of a blob.
+     * @param hash blob hash
+     * @return buffered stream over the stored bytes
+     * @throws IOException if the blob file cannot be opened
+     * */
+    private InputStream stored(String hash) throws IOException {
+        File loose = ObjectDir.path(dir, hash);
+        if (loose.isFile()) {
+            return new BufferedInputStream(new FileInputStream(loose),
+                    BUF_SIZE);
+        }
+        InputStream in = pack.open(hash);
+        if (in == null) {
+            throw new NotFoundException("No blob %s.", hash);
+        }
+        return new BufferedInputStream(in, BUF_SIZE);
+    }
+
+    /** read a chunk manifest.
+     * @param in stored bytes of a blob, with their header
+     * @return chunk hashes in order, empty if the blob is no manifest
+     * @throws IOException on malformed input
+     * */
+    private static List<String> manifest(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (!Arrays.equals(data.readNBytes(CHUNKED.length), CHUNKED)) {
+            return new ArrayList<String>();
+        }
+        return chunkList(data);
+    }
+
+    /** read the chunk list of a manifest.
+     * @param data manifest positioned after its magic bytes
+     * @return chunk hashes in order
+     * @throws IOException on malformed input
+     * */
+    private static List<String> chunkList(DataInputStream data)
+            throws IOException {
+        ArrayList<String> parts = new ArrayList<String>();
+        data.readLong();
+        long n = Codec.readVarint(data);
+        for (long i = 0; i < n; i++) {
+            parts.add(Codec.readHash(data));
+            Codec.readVarint(data);
+        }
+        return parts;
+    }
+
+    /** write the contents of a blob to a file. Loose blobs stored as
+     * they are copied with FileChannel.transferTo.
+     * @param hash blob hash
+     * @param dest file to write to
+     * */
+    void copyTo(String hash, File dest) {
+        try (Trace.Span span = Trace.begin("checkout")) {
+            copy(hash, dest);
+        }
+        if (Trace.isOn()) {
+            Trace.count(Trace.Counter.BYTES_WRITTEN, dest.length());
+        }
+    }
+
+    /** write the contents of a blob to a file.
+     * @param hash blob hash
+     * @param dest file to write to
+     * */
+    private void copy(String hash, File dest) {
+        byte[] cached = smallBlobs.get(hash);
+        if (cached != null) {
+            Utils.writeContents(dest, cached);
+            return;
+        }
+        File loose = ObjectDir.path(dir, hash);
+        if (!loose.isFile()) {
+            write(open(hash), dest);
+            return;
+        }
+        try (FileChannel in = FileChannel.open(loose.toPath())) {
+            long start = isLegacy(dir, loose) ? 0
+                    : rawStart(in);
+            if (start < 0) {
+                in.position(0);
+                write(decode(new BufferedInputStream(
+                        Channels.newInputStream(in), BUF_SIZE), hash), dest);
+                return;
+            }
+            try (FileChannel out = FileChannel.open(dest.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = in.size();
+                for (long done = start; done < size;) {
+                    done += in.transferTo(done, size - done, out);
+                }
+            }
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** find where the contents of a blob stored as it is begin.
+     * @param in stored blob with a header
+     * @return header length, or -1 if the blob is not stored as it is
+     * @throws IOException on read failure
+     * */
+    private static long rawStart(FileChannel in) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(RAW.length);
+        while (head.hasRemaining() && in.read(head, head.position()) > 0) {
+            continue;
+        }
+        return Arrays.equals(head.array(), RAW) ? HEADER_LEN : -1;
+    }
+
+    /** write a stream to a file and close the stream.
+     * @param in source
+     * @param dest file to write to
+     * */
+    private static void write(InputStream in, File dest) {
+        try (in; OutputStream out = new FileOutputStream(dest)) {
+            in.transferTo(out);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** read a whole blob. Small blobs are kept in memory.
+     * @param hash blob hash
+     * @return raw contents of the blob
+     * */
+    byte[] read(String hash) {
+        byte[] cached = smallBlobs.get(hash);
+        if (cached != null) {
+            return cached;
+        }
+        try (Trace.Span span = Trace.begin("read");
+             InputStream in = open(hash)) {
+            byte[] data = in.readAllBytes();
+            Trace.count(Trace.Counter.BYTES_READ, data.length);
+            if (data.length <= SMALL_BLOB) {
+                smallBlobs.put(hash, data, data.length);
+            }
+            return data;
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** store every blob written before blobs had a header again, with a
+     * header and in its shard. Blobs already converted are not read. The
+     * new blob is written before the old file is deleted, so a failure
+     * in between leaves both, and the next run only deletes the old one.
+     * @return number of blobs converted, bytes of the old files and
+     * bytes written for them, chunks included
+     * */
+    long[] migrate() {
+        long converted = 0;
+        long before = 0;
+        long after = 0;
+        for (String hash : Utils.plainFilenamesIn(dir)) {
+            if (!HASH_NAME.matcher(hash).matches()) {
+                continue;
+            }
+            File f = Utils.join(dir, hash);
+            long len = f.length();
+            long[] written = {0};
+            if (!store(f, true, written).equals(hash)) {
+                continue;
+            }
+            f.delete();
+            converted += 1;
+            before += len;
+            after += written[0];
+        }
+        return new long[] {converted, before, after};
+    }
+
+    /** hex helper.
+     * @param digest raw digest bytes
+     * @return lower case hex string, as produced by Utils.sha1
+     * */
+    static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /** folder holding the loose blobs. */
+    private File dir;
+    /** pack holding the packed blobs. */
+    private Pack pack;
+    /** list of the blobs stored in chunks, one hash per line. */
+    private File manifests;
+    /** scratch folder of the repository. */
+    private File scratch;
+    /** blobs recently read through this store. */
+    private final ObjectCache<byte[]> smallBlobs =
+            new ObjectCache<byte[]>(CACHE_BYTES);
+}
@@ -0,0 +1,402 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/** Objects moved between two repositories in one streamed file. Only
+ * the objects the receiving side lacks are written: the parent chain of
+ * the wanted commit is walked until commits the receiver has, and the
+ * trees of the missing commits are walked until sub-trees it has, so
+ * the work done depends on the size of the change rather than of the
+ * history. Records come in an order where every object follows those
+ * it refers to, blobs and sub-trees before trees and parents before
+ * commits, so a bundle applied only in part still leaves every stored
+ * object complete.
+ * @author Yizhang Lin
+ * */
+class Bundle {
+    /** magic bytes opening a bundle. */
+    static final int MAGIC = 0x47424e31;
+    /** record kind of commits. */
+    static final int COMMIT = 0;
+    /** record kind of trees. */
+    static final int TREE = 1;
+    /** record kind of blobs. */
+    static final int BLOB = 2;
+    /** record kind ending a bundle. */
+    static final int END = 0xff;
+    /** largest commit or tree record read into memory. */
+    static final long MAX_RECORD = 64 << 20;
+
+    /** initialize Bundle.
+     * @param source repository holding the objects
+     * @param target repository receiving them
+     * @param dest stream the bundle is written to
+     * */
+    private Bundle(Store source, Store target, DataOutputStream dest) {
+        from = source;
+        to = target;
+        out = dest;
+    }
+
+    /** write a bundle of the history of a commit that one repository
+     * has and another lacks.
+     * @param from repository holding the commit
+     * @param to repository receiving it
+     * @param want the commit
+     * @param dir folder the bundle is written to
+     * @return the bundle file
+     * */
+    static File write(Store from, Store to, String want, File dir) {
+        File dest = null;
+        try (Trace.Span span = Trace.begin("bundle")) {
+            dir.mkdir();
+            dest = File.createTempFile("bundle", null, dir);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(dest),
+                            Blobs.BUF_SIZE))) {
+                out.writeInt(MAGIC);
+                Bundle b = new Bundle(from, to, out);
+                for (String id : b.missingCommits(want)) {
+                    b.sendCommit(id);
+                }
+                out.writeByte(END);
+            }
+            if (Trace.isOn()) {
+                Trace.count(Trace.Counter.BYTES_WRITTEN, dest.length());
+            }
+            return dest;
+        } catch (IOException excp) {
+            if (dest != null) {
+                dest.delete();
+            }
+            throw new StorageException(excp);
+        }
+    }
+
+    /** store the objects of a bundle in this repository. Every object
+     * is checked against its hash before it is stored; blobs are checked
+     * as they arrive, after the chunks they are made of.
+     * @param repo repository the objects are stored in
+     * @param bundle the bundle file
+     * @return commits that were not stored before, parents first
+     * */
+    static List<String> apply(Repository repo, File bundle) {
+        Store local = Store.local(repo);
+        ArrayList<String> added = new ArrayList<String>();
+        try (Trace.Span span = Trace.begin("unbundle");
+             DataInputStream in = new DataInputStream(new BufferedInputStream(
+                     new FileInputStream(bundle), Blobs.BUF_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new StorageException("%s is not a bundle.",
+                        bundle.getName());
+            }
+            for (int kind = in.readUnsignedByte(); kind != END;
+                 kind = in.readUnsignedByte()) {
+                if (kind > BLOB) {
+                    throw new StorageException("%s is corrupt.",
+                            bundle.getName());
+                }
+                String hash = Codec.readHash(in);
+                long len = Codec.readVarint(in);
+                if (len < 0 || kind != BLOB && len > MAX_RECORD) {
+                    throw new StorageException("%s is corrupt.",
+                            bundle.getName());
+                }
+                File dir = local.loose[kind];
+                if (local.has(kind, hash)) {
+                    copy(in, null, len);
+                    continue;
+                }
+                dir.mkdir();
+                if (kind == BLOB) {
+                    receive(repo.blobs(), in, len, dir, hash,
+                            bundle.getName());
+                    continue;
+                }
+                byte[] data = new byte[(int) len];
+                in.readFully(data);
+                if (!Utils.sha1(data).equals(hash)) {
+                    throw new StorageException(
+                            "Object %s in %s is corrupt.", hash,
+                            bundle.getName());
+                }
+                ObjectDir.write(dir, hash, data);
+                if (kind == COMMIT) {
+                    added.add(hash);
+                }
+            }
+            if (Trace.isOn()) {
+                Trace.count(Trace.Counter.BYTES_READ, bundle.length());
+            }
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+        return added;
+    }
+
+    /** list the commits reachable from a commit that the receiver lacks.
+     * Walking stops at commits the receiver has, which come with their
+     * whole history.
+     * @param want the commit
+     * @return missing commits, parents before children
+     * */
+    private List<String> missingCommits(String want) {
+        ArrayList<String> missing = new ArrayList<String>();
+        HashSet<String> done = new HashSet<String>();
+        HashSet<String> expanded = new HashSet<String>();
+        ArrayDeque<String> stack = new ArrayDeque<String>();
+        stack.push(want);
+        while (!stack.isEmpty()) {
+            String id = stack.peek();
+            if (done.contains(id)) {
+                stack.pop();
+            } else if (to.has(COMMIT, id)) {
+                stack.pop();
+                done.add(id);
+            } else if (expanded.add(id)) {
+                Commit c = Commit.decode(from.read(COMMIT, id));
+                if (c.getSecondParent() != null) {
+                    stack.push(c.getSecondParent());
+                }
+                if (c.getParentCommit() != null) {
+                    stack.push(c.getParentCommit());
+                }
+            } else {
+                stack.pop();
+                done.add(id);
+                missing.add(id);
+            }
+        }
+        return missing;
+    }
+
+    /** write a commit after the trees and blobs it refers to.
+     * @param id commit id
+     * @throws IOException on write failure
+     * */
+    private void sendCommit(String id) throws IOException {
+        byte[] data = from.read(COMMIT, id);
+        Commit c = Commit.decode(data);
+        if (c.hasTree()) {
+            sendTree(c.getTree());
+        } else {
+            for (String blob : c.getFiles().values()) {
+                sendBlob(blob);
+            }
+        }
+        record(COMMIT, id, data.length);
+        out.write(data);
+    }
+
+    /** write a tree after its sub-trees and blobs, unless the receiver
+     * has it.
+     * @param hash tree hash
+     * @throws IOException on write failure
+     * */
+    private void sendTree(String hash) throws IOException {
+        if (sent.contains(hash) || to.has(TREE, hash)) {
+            return;
+        }
+        byte[] data = from.read(TREE, hash);
+        for (Tree.Entry e : Tree.decode(data).getEntries()) {
+            if (e.isTree()) {
+                sendTree(e.getHash());
+            } else {
+                sendBlob(e.getHash());
+            }
+        }
+        sent.add(hash);
+        record(TREE, hash, data.length);
+        out.write(data);
+    }
+
+    /** write a blob unless the receiver has it, after its chunks if it
+     * is stored in chunks. Loose blobs are copied from their files
+     * without being read whole; blobs written before blobs had a header
+     * are sent with one.
+     * @param hash blob hash
+     * @throws IOException on write failure
+     * */
+    private void sendBlob(String hash) throws IOException {
+        if (!sent.add(hash) || to.has(BLOB, hash)) {
+            return;
+        }
+        File f = ObjectDir.path(from.loose[BLOB], hash);
+        if (f.isFile() && Blobs.isLegacy(from.loose[BLOB], f)) {
+            record(BLOB, hash, Blobs.HEADER_LEN + f.length());
+            Blobs.writeHeader(out, Blobs.RAW, f.length());
+            Files.copy(f.toPath(), out);
+            return;
+        }
+        if (f.isFile() && !Blobs.isChunked(f)) {
+            record(BLOB, hash, f.length());
+            Files.copy(f.toPath(), out);
+            return;
+        }
+        byte[] data = from.read(BLOB, hash);
+        for (String c : Blobs.chunks(data)) {
+            sendBlob(c);
+        }
+        record(BLOB, hash, data.length);
+        out.write(data);
+    }
+
+    /** write the header of a record.
+     * @param kind record kind
+     * @param hash object hash
+     * @param len length of the stored object that follows
+     * @throws IOException on write failure
+     * */
+    private void record(int kind, String hash, long len) throws IOException {
+        out.writeByte(kind);
+        Codec.writeHash(out, hash);
+        Codec.writeVarint(out, len);
+    }
+
+    /** stream a blob into place once its contents match its hash.
+     * @param blobs blob store of the receiving repository
+     * @param in bundle positioned at the blob
+     * @param len length of the blob
+     * @param dir blob folder
+     * @param hash blob hash
+     * @param name bundle name, for error messages
+     * @throws IOException on read or write failure
+     * */
+    private static void receive(Blobs blobs, DataInputStream in, long len,
+                                File dir, String hash, String name)
+            throws IOException {
+        File tmp = File.createTempFile("obj", null, dir);
+        try {
+            try (OutputStream blob = new FileOutputStream(tmp)) {
+                copy(in, blob, len);
+            }
+            if (!blobs.matches(tmp, hash)) {
+                throw new StorageException("Object %s in %s is corrupt.",
+                        hash, name);
+            }
+            Trace.count(Trace.Counter.BYTES_WRITTEN, len);
+            if (Blobs.isChunked(tmp)) {
+                blobs.writeManifest(hash, Utils.readContents(tmp));
+            } else {
+                LockFile.move(tmp, ObjectDir.create(dir, hash));
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /** copy bytes between streams.
+     * @param in source
+     * @param dest destination, or null to skip the bytes
+     * @param len number of bytes
+     * @throws IOException on read or write failure
+     * */
+    private static void copy(InputStream in, OutputStream dest, long len)
+            throws IOException {
+        byte[] buf = new byte[(int) Math.min(len, Blobs.BUF_SIZE)];
+        while (len > 0) {
+            int n = in.read(buf, 0, (int) Math.min(len, buf.length));
+            if (n < 0) {
+                throw new StorageException("Bundle ends early.");
+            }
+            if (dest != null) {
+                dest.write(buf, 0, n);
+            }
+            len -= n;
+        }
+    }
+
+    /** The objects of one repository, loose or packed. */
+    static class Store {
+        /** initialize Store.
+         * @param dirs loose object folders by record kind
+         * @param kindPacks packs by record kind
+         * */
+        private Store(File[] dirs, Pack[] kindPacks) {
+            loose = dirs;
+            packs = kindPacks;
+        }
+
+        /** get the objects of a repository this process has open.
+         * @param repo the repository
+         * @return the store, sharing the packs of the repository
+         * */
+        static Store local(Repository repo) {
+            File gitDir = repo.gitDir();
+            return new Store(new File[] {
+                Utils.join(gitDir, Repository.COMMITS),
+                Utils.join(gitDir, Tree.TREES),
+                Utils.join(gitDir, Repository.FILES)},
+                    repo.packs());
+        }
+
+        /** get the objects of another repository.
+         * @param gitDir its .gitlet folder
+         * @return the store
+         * */
+        static Store at(File gitDir) {
+            File[] dirs = {Utils.join(gitDir, Repository.COMMITS),
+                Utils.join(gitDir, Tree.TREES),
+                Utils.join(gitDir, Repository.FILES)};
+            File packDir = Utils.join(gitDir, Pack.DIR);
+            File scratch = Utils.join(gitDir, LockFile.SCRATCH);
+            return new Store(dirs, new Pack[] {
+                new Pack(dirs[COMMIT], packDir, scratch, "commit"),
+                new Pack(dirs[TREE], packDir, scratch, "tree"),
+                new Pack(dirs[BLOB], packDir, scratch, "files")});
+        }
+
+        /** check if an object is stored.
+         * @param kind record kind
+         * @param hash object hash
+         * @return true if stored loose or packed
+         * */
+        boolean has(int kind, String hash) {
+            return ObjectDir.path(loose[kind], hash).isFile()
+                    || packs[kind].contains(hash);
+        }
+
+        /** read the stored bytes of an object.
+         * @param kind record kind
+         * @param hash object hash
+         * @return stored bytes
+         * */
+        byte[] read(int kind, String hash) {
+            File f = ObjectDir.path(loose[kind], hash);
+            byte[] data = f.isFile() ? Utils.readContents(f)
+                    : packs[kind].read(hash);
+            if (data == null) {
+                throw new NotFoundException("Missing object %s.", hash);
+            }
+            return data;
+        }
+
+        /** loose object folders by record kind. */
+        private File[] loose;
+        /** packs by record kind. */
+        private Pack[] packs;
+    }
+
+    /** repository holding the objects. */
+    private Store from;
+    /** repository receiving them. */
+    private Store to;
+    /** stream the bundle is written to. */
+    private DataOutputStream out;
+    /** trees and blobs written so far. */
+    private HashSet<String> sent = new HashSet<String>();
+}
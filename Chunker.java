@@ -0,0 +1,110 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Splits a stream into content-defined chunks with FastCDC. A gear
+ * hash rolls over the bytes and a chunk ends where its top bits are all
+ * zero, so inserting or deleting bytes only moves the boundaries next to
+ * the edit and the other chunks of a new version keep their hashes. The
+ * mask is harder to satisfy before the average size and easier after
+ * it, which keeps chunk sizes close to the average.
+ * @author Yizhang Lin
+ * */
+class Chunker {
+    /** smallest chunk, except the last one. */
+    static final int MIN_SIZE = 16 << 10;
+    /** average chunk size. */
+    static final int AVG_SIZE = 64 << 10;
+    /** largest chunk. */
+    static final int MAX_SIZE = 256 << 10;
+
+    /** initialize Chunker.
+     * @param source stream to split
+     * */
+    Chunker(InputStream source) {
+        in = source;
+    }
+
+    /** read the next chunk.
+     * @return bytes of the chunk, or null at the end of the stream
+     * @throws IOException on read failure
+     * */
+    byte[] next() throws IOException {
+        if (end - start < MAX_SIZE && !eof) {
+            System.arraycopy(buf, start, buf, 0, end - start);
+            end -= start;
+            start = 0;
+            while (end < buf.length && !eof) {
+                int n = in.read(buf, end, buf.length - end);
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    end += n;
+                }
+            }
+        }
+        if (start == end) {
+            return null;
+        }
+        int len = cut(start, end - start);
+        byte[] chunk = Arrays.copyOfRange(buf, start, start + len);
+        start += len;
+        return chunk;
+    }
+
+    /** find where the chunk at an offset ends.
+     * @param off start of the chunk in the buffer
+     * @param n bytes available from there
+     * @return length of the chunk
+     * */
+    private int cut(int off, int n) {
+        if (n <= MIN_SIZE) {
+            return n;
+        }
+        int normal = Math.min(n, AVG_SIZE);
+        int last = Math.min(n, MAX_SIZE);
+        long fp = 0;
+        int i = MIN_SIZE;
+        for (; i < normal; i++) {
+            fp = (fp << 1) + GEAR[buf[off + i] & 0xff];
+            if ((fp & MASK_SMALL) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < last; i++) {
+            fp = (fp << 1) + GEAR[buf[off + i] & 0xff];
+            if ((fp & MASK_LARGE) == 0) {
+                return i + 1;
+            }
+        }
+        return last;
+    }
+
+    /** random value per byte, the same in every run. */
+    private static final long[] GEAR = new long[256];
+    /** mask used before the average size: two bits more than average. */
+    private static final long MASK_SMALL = -1L << (64 - 18);
+    /** mask used after the average size: two bits less than average. */
+    private static final long MASK_LARGE = -1L << (64 - 14);
+
+    static {
+        Random r = new Random(0x6765617268617368L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = r.nextLong();
+        }
+    }
+
+    /** stream being split. */
+    private InputStream in;
+    /** bytes read and not yet returned are buf[start, end). */
+    private byte[] buf = new byte[2 * MAX_SIZE];
+    /** start of the unreturned bytes. */
+    private int start;
+    /** end of the bytes read. */
+    private int end;
+    /** whether the stream is exhausted. */
+    private boolean eof;
+}
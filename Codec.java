@@ -0,0 +1,185 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+/** Helpers for the binary metadata format. Every record opens with a
+ * two byte tag and a version byte, lengths and counts are unsigned
+ * varints, strings are UTF-8 and object hashes are stored as raw bytes.
+ * @author Yizhang Lin
+ * */
+class Codec {
+    /** current format version. Version 2 commits refer to a root tree
+     * instead of listing their files. */
+    static final int VERSION = 2;
+
+    /** Record writer. */
+    interface Writer {
+        /** write a record body.
+         * @param out destination
+         * @throws IOException on write failure
+         * */
+        void write(DataOutput out) throws IOException;
+    }
+
+    /** Record reader.
+     * @param <T> type of the decoded record */
+    interface Reader<T> {
+        /** read a record body.
+         * @param in source, positioned after the header
+         * @param version format version of the record
+         * @return decoded record
+         * @throws IOException on malformed input
+         * */
+        T read(DataInput in, int version) throws IOException;
+    }
+
+    /** encode a record.
+     * @param tag two character record tag
+     * @param body writer of the record body
+     * @return encoded bytes
+     * */
+    static byte[] encode(String tag, Writer body) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(tag.charAt(0));
+            out.writeByte(tag.charAt(1));
+            out.writeByte(VERSION);
+            body.write(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** decode a record, falling back to Java serialization for records
+     * written by older versions of gitlet.
+     * @param <T> type of the record
+     * @param data encoded bytes
+     * @param tag expected two character record tag
+     * @param cls record class, used for legacy records
+     * @param body reader of the record body
+     * @return decoded record
+     * */
+    static <T extends Serializable> T decode(byte[] data, String tag,
+                                            Class<T> cls, Reader<T> body) {
+        Trace.count(Trace.Counter.OBJECTS_DECODED, 1);
+        Trace.count(Trace.Counter.BYTES_READ, data.length);
+        try (Trace.Span span = Trace.begin("decode")) {
+            if (isLegacy(data)) {
+                try (ObjectInputStream in = new ObjectInputStream(
+                        new ByteArrayInputStream(data))) {
+                    return cls.cast(in.readObject());
+                }
+            }
+            if (data.length < 3 || data[0] != tag.charAt(0)
+                    || data[1] != tag.charAt(1)) {
+                throw new StorageException("Not a %s record.",
+                        cls.getSimpleName());
+            }
+            if (data[2] > VERSION) {
+                throw new StorageException("Unsupported %s format version %d.",
+                        cls.getSimpleName(), data[2]);
+            }
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(data, 3, data.length - 3));
+            return body.read(in, data[2]);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        } catch (ClassNotFoundException excp) {
+            throw new StorageException("Not a %s record.",
+                    cls.getSimpleName());
+        }
+    }
+
+    /** check if data was written with Java serialization.
+     * @param data encoded bytes
+     * @return true if data starts with the serialization stream magic
+     * */
+    static boolean isLegacy(byte[] data) {
+        return data.length >= 2 && (data[0] & 0xff) == 0xac
+                && (data[1] & 0xff) == 0xed;
+    }
+
+    /** write an unsigned varint.
+     * @param out destination
+     * @param v non-negative value
+     * @throws IOException on write failure
+     * */
+    static void writeVarint(DataOutput out, long v) throws IOException {
+        while ((v & ~0x7fL) != 0) {
+            out.writeByte((int) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    /** read an unsigned varint.
+     * @param in source
+     * @return value
+     * @throws IOException on malformed input
+     * */
+    static long readVarint(DataInput in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    /** write a length prefixed UTF-8 string.
+     * @param out destination
+     * @param s string to write
+     * @throws IOException on write failure
+     * */
+    static void writeString(DataOutput out, String s) throws IOException {
+        byte[] raw = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, raw.length);
+        out.write(raw);
+    }
+
+    /** read a length prefixed UTF-8 string.
+     * @param in source
+     * @return string
+     * @throws IOException on malformed input
+     * */
+    static String readString(DataInput in) throws IOException {
+        byte[] raw = new byte[(int) readVarint(in)];
+        in.readFully(raw);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    /** write an object hash as raw bytes.
+     * @param out destination
+     * @param hash hex hash string
+     * @throws IOException on write failure
+     * */
+    static void writeHash(DataOutput out, String hash) throws IOException {
+        out.write(Pack.toRaw(hash));
+    }
+
+    /** read an object hash.
+     * @param in source
+     * @return hex hash string
+     * @throws IOException on malformed input
+     * */
+    static String readHash(DataInput in) throws IOException {
+        byte[] raw = new byte[Pack.HASH_LEN];
+        in.readFully(raw);
+        return Blobs.toHex(raw);
+    }
+}
@@ -1,5 +1,8 @@
 package gitlet;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.HashMap;
@@ -8,13 +11,18 @@ import java.util.HashMap;
  * @author Yizhang Lin
  * */
 public class Commit implements Serializable {
+    /** kept equal to the value computed for the original class, so that
+     * commits written with Java serialization still load. */
+    private static final long serialVersionUID = -607803959806393280L;
+    /** record tag of encoded commits. */
+    static final String TAG = "GC";
+
     /** initialize Commit.
      * @param d commit date
      * @param l commit log*/
     public Commit(Date d, String l) {
         date = d;
         log = l;
-        files = new HashMap<String, String>();
     }
     /** get date.
      * @return date the commit is made*/
@@ -31,22 +39,134 @@ public class Commit implements Serializable {
     public String getParentCommit() {
         return parentCommit;
     }
-    /** get all tracked files.
+    /** get all tracked files. For commits that refer to a tree the map
+     * is built from the tree on first use.
      * @return tracked files */
     public HashMap<String, String> getFiles() {
+        if (files == null) {
+            files = new HashMap<String, String>();
+            if (tree != null) {
+                trees.flatten(tree, "", files);
+            }
+        }
         return files;
     }
+    /** get root tree, writing trees for the file map of commits made
+     * before trees were introduced.
+     * @return hash of the root tree */
+    public String getTree() {
+        if (tree == null) {
+            tree = trees.fromFiles(getFiles());
+        }
+        return tree;
+    }
+    /** check if this commit refers to a tree.
+     * @return false for commits made before trees were introduced */
+    public boolean hasTree() {
+        return tree != null;
+    }
+    /** set root tree of this.
+     * @param t hash of the root tree*/
+    public void setTree(String t) {
+        tree = t;
+        files = null;
+    }
+    /** set the tree store this commit reads and writes its trees in.
+     * @param t tree store of the repository holding this commit */
+    void setTrees(Trees t) {
+        trees = t;
+    }
+    /** get second parent commit.
+     * @return the merged-in parent of a merge commit, or null */
+    public String getSecondParent() {
+        return secondParent;
+    }
     /** set parent commit of this.
      * @param p the string for parent commit*/
     public void setParentCommit(String p) {
         parentCommit = p;
     }
+    /** set second parent commit of this.
+     * @param p the string for the merged-in parent commit*/
+    public void setSecondParent(String p) {
+        secondParent = p;
+    }
+    /** encode this commit. The encoding is canonical, and the commit id
+     * is the hash of these bytes.
+     * @return encoded bytes
+     * */
+    public byte[] encode() {
+        return Codec.encode(TAG, this::write);
+    }
+
+    /** decode a commit.
+     * @param data bytes produced by encode, or by Java serialization
+     * @return the commit
+     * */
+    public static Commit decode(byte[] data) {
+        return Codec.decode(data, TAG, Commit.class, Commit::read);
+    }
+
+    /** write the record body.
+     * @param out destination
+     * @throws IOException on write failure
+     * */
+    private void write(DataOutput out) throws IOException {
+        out.writeLong(date.getTime());
+        Codec.writeString(out, log);
+        int parents = parentCommit == null ? 0
+                : secondParent == null ? 1 : 2;
+        out.writeByte(parents);
+        if (parents > 0) {
+            Codec.writeHash(out, parentCommit);
+        }
+        if (parents > 1) {
+            Codec.writeHash(out, secondParent);
+        }
+        Codec.writeHash(out, getTree());
+    }
+
+    /** read a record body.
+     * @param in source
+     * @param version format version
+     * @return the commit
+     * @throws IOException on malformed input
+     * */
+    private static Commit read(DataInput in, int version)
+            throws IOException {
+        Commit c = new Commit(new Date(in.readLong()), Codec.readString(in));
+        int parents = in.readUnsignedByte();
+        if (parents > 0) {
+            c.parentCommit = Codec.readHash(in);
+        }
+        if (parents > 1) {
+            c.secondParent = Codec.readHash(in);
+        }
+        if (version < 2) {
+            c.files = new HashMap<String, String>();
+            long n = Codec.readVarint(in);
+            for (long i = 0; i < n; i++) {
+                c.files.put(Codec.readString(in), Codec.readHash(in));
+            }
+        } else {
+            c.tree = Codec.readHash(in);
+        }
+        return c;
+    }
+
     /** commit date. */
     private Date date;
     /** commit log. */
     private String log;
-    /** tracked files, key is file name, value is file hash name. */
+    /** tracked files, key is file name, value is file hash name. Only
+     * stored for commits made before trees; otherwise built from tree. */
     private HashMap<String, String> files;
+    /** hash of the root tree. */
+    private String tree;
     /** parent commit. */
     private String parentCommit;
+    /** second parent commit, set on merge commits only. */
+    private String secondParent;
+    /** tree store of the repository holding this commit. */
+    private transient Trees trees;
 }
@@ -0,0 +1,760 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** Commit graph: one fixed width record per commit holding its id,
+ * parent record numbers, generation number, timestamp and the offset of
+ * its message in a side file. Records are appended parents first, so
+ * history can be walked by record number without decoding commits. Each
+ * message is followed by a PathFilter of the paths the commit changed
+ * relative to its first parent, so path history skips most commits.
+ * Records are found by id through a side table of ids in sorted order
+ * with a 256 entry fanout on their first byte, binary searched in place.
+ * The table is rewritten only once TAIL_MAX records were appended after
+ * it, and those newer records are scanned directly, so a commit costs
+ * the same however long the history is. A message is written before
+ * its record, and a write torn by a crash is cut off before the next
+ * append, so records always stay aligned with their messages.
+ * @author Yizhang Lin
+ * */
+class CommitGraph {
+    /** name of the graph file in the metadata folder. */
+    static final String GRAPH = "graph";
+    /** name of the commit message file. */
+    static final String MESSAGES = "graphMsgs";
+    /** magic number opening the graph file. */
+    static final int MAGIC = 0x47434731;
+    /** graph format version, written after the magic. Version 4 graphs
+     * come with an id table. */
+    static final int VERSION = 4;
+    /** graph header length: magic plus version. */
+    static final int HEADER_LEN = 8;
+    /** record length: id, two parents, generation, time, message. */
+    static final int RECORD_LEN = Pack.HASH_LEN + 4 + 4 + 4 + 8 + 8;
+    /** parent record number meaning no parent. */
+    static final int NONE = -1;
+    /** name of the id table file. */
+    static final String IDS = "graphIds";
+    /** magic number opening the id table. */
+    static final int IDS_MAGIC = 0x47434931;
+    /** number of fanout entries, one per first id byte. */
+    static final int FANOUT = 256;
+    /** id table header length: magic, records covered and fanout. */
+    static final int IDS_HEADER = 8 + FANOUT * 4;
+    /** id table entry length: id and record number. */
+    static final int ID_LEN = Pack.HASH_LEN + 4;
+    /** most records appended after the id table before it is rewritten. */
+    static final int TAIL_MAX = 1024;
+
+    /** initialize CommitGraph. The graph is read on first use.
+     * @param r repository the graph belongs to
+     * @param gitDir metadata folder of the repository
+     * @param scratchDir scratch folder of the repository
+     * */
+    CommitGraph(Repository r, File gitDir, File scratchDir) {
+        repo = r;
+        graphFile = Utils.join(gitDir, GRAPH);
+        messages = Utils.join(gitDir, MESSAGES);
+        idsFile = Utils.join(gitDir, IDS);
+        scratch = scratchDir;
+    }
+
+    /** read the graph, building it if it is missing.
+     * @return this graph
+     * */
+    CommitGraph load() {
+        if (!loaded) {
+            if (!isCurrent()) {
+                build();
+            }
+            size = (int) ((graphFile.length() - HEADER_LEN) / RECORD_LEN);
+            loaded = true;
+        }
+        return this;
+    }
+
+    /** forget the loaded graph, so it is read again on next use. */
+    void reload() {
+        loaded = false;
+        unmap();
+        if (messageFile != null) {
+            try {
+                messageFile.close();
+            } catch (IOException excp) {
+                throw new StorageException(excp);
+            }
+            messageFile = null;
+        }
+    }
+
+    /** find the record of a commit, adding it and any of its ancestors
+     * missing from the graph, such as fetched commits.
+     * @param id commit id
+     * @return record number
+     * */
+    int recordOf(String id) {
+        int i = load().indexOf(id);
+        if (i == NONE) {
+            append(id, repo.readCommit(id));
+            i = load().indexOf(id);
+        }
+        return i;
+    }
+
+    /** add a commit to the graph, after those of its ancestors that are
+     * missing from it. The graph is read again if another process
+     * appended to it.
+     * @param id commit id
+     * @param c the commit
+     * */
+    void append(String id, Commit c) {
+        try (LockFile lock = LockFile.acquire(graphFile)) {
+            if (!isCurrent()) {
+                rebuild();
+                reload();
+                return;
+            }
+            if (repair()) {
+                reload();
+            }
+            if (loaded && graphFile.length()
+                    != HEADER_LEN + (long) size * RECORD_LEN) {
+                reload();
+            }
+            load().add(id, c);
+            if (size - covered() >= TAIL_MAX) {
+                writeIds();
+                unmap();
+            }
+        }
+    }
+
+    /** rebuild the graph from every commit reachable from a branch. */
+    void build() {
+        try (LockFile lock = LockFile.acquire(graphFile)) {
+            rebuild();
+        }
+    }
+
+    /** check that the graph file exists and has the current format.
+     * @return false if the graph must be rebuilt
+     * */
+    private boolean isCurrent() {
+        if (graphFile.length() < HEADER_LEN) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new FileInputStream(graphFile))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION;
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** cut off a record or message torn by a crash, so the next append
+     * lands on a record boundary. A record whose message was not fully
+     * written is dropped with it. Called with the graph locked.
+     * @return true if anything was cut off
+     * */
+    private boolean repair() {
+        try (FileChannel records = FileChannel.open(graphFile.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileChannel msgs = FileChannel.open(messages.toPath(),
+                     StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE)) {
+            long n = (records.size() - HEADER_LEN) / RECORD_LEN;
+            long end = 0;
+            while (n > 0) {
+                ByteBuffer at = ByteBuffer.allocate(8);
+                readFully(records, at, HEADER_LEN + n * RECORD_LEN - 8);
+                end = entryEnd(msgs, at.getLong(0));
+                if (end >= 0) {
+                    break;
+                }
+                n -= 1;
+                end = 0;
+            }
+            long whole = HEADER_LEN + n * RECORD_LEN;
+            boolean cut = records.size() != whole || msgs.size() != end;
+            records.truncate(whole);
+            msgs.truncate(end);
+            return cut;
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** find where the message and filter of a record end.
+     * @param msgs message file
+     * @param at offset of the message
+     * @return end offset, or -1 if they are not fully written
+     * @throws IOException on read failure
+     * */
+    private static long entryEnd(FileChannel msgs, long at)
+            throws IOException {
+        ByteBuffer len = ByteBuffer.allocate(4);
+        if (at < 0 || at + 4 > msgs.size()) {
+            return -1;
+        }
+        readFully(msgs, len, at);
+        long filterAt = at + 4 + len.getInt(0);
+        if (len.getInt(0) < 0 || filterAt + 4 > msgs.size()) {
+            return -1;
+        }
+        len.clear();
+        readFully(msgs, len, filterAt);
+        long end = filterAt + 4 + Math.max(0, len.getInt(0));
+        return end > msgs.size() ? -1 : end;
+    }
+
+    /** fill a buffer from a file.
+     * @param ch the file
+     * @param buf buffer to fill
+     * @param at file offset to read from
+     * @throws IOException on read failure
+     * */
+    private static void readFully(FileChannel ch, ByteBuffer buf, long at)
+            throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, at + buf.position()) < 0) {
+                throw new StorageException("Corrupt commit graph.");
+            }
+        }
+    }
+
+    /** rebuild helper, called with the graph locked. */
+    private void rebuild() {
+        graphFile.delete();
+        messages.delete();
+        idsFile.delete();
+        HashMap<String, Integer> numbers = new HashMap<String, Integer>();
+        ArrayList<Integer> gens = new ArrayList<Integer>();
+        writeHeader();
+        for (String b : repo.branches()) {
+            ArrayDeque<String> stack = new ArrayDeque<String>();
+            stack.push(repo.branchHead(b));
+            while (!stack.isEmpty()) {
+                String id = stack.peek();
+                if (numbers.containsKey(id)) {
+                    stack.pop();
+                    continue;
+                }
+                Commit c = repo.readCommit(id);
+                String p = c.getParentCommit();
+                String p2 = c.getSecondParent();
+                if (p != null && !numbers.containsKey(p)) {
+                    stack.push(p);
+                    continue;
+                }
+                if (p2 != null && !numbers.containsKey(p2)) {
+                    stack.push(p2);
+                    continue;
+                }
+                stack.pop();
+                int parent = p == null ? NONE : numbers.get(p);
+                int parent2 = p2 == null ? NONE : numbers.get(p2);
+                int generation = 1 + Math.max(
+                        parent == NONE ? 0 : gens.get(parent),
+                        parent2 == NONE ? 0 : gens.get(parent2));
+                write(id, parent, parent2, generation, c);
+                numbers.put(id, gens.size());
+                gens.add(generation);
+            }
+        }
+        writeIds();
+    }
+
+    /** rewrite the id table to cover every record, merging the records
+     * appended since it was written into it. Called with the graph
+     * locked.
+     * */
+    private void writeIds() {
+        MappedByteBuffer records = map(graphFile);
+        int n = (records.capacity() - HEADER_LEN) / RECORD_LEN;
+        MappedByteBuffer old = mapIds();
+        int covered = old == null || old.getInt(4) > n ? 0 : old.getInt(4);
+        ArrayList<byte[]> tail = new ArrayList<byte[]>();
+        int[] fanout = new int[FANOUT];
+        for (int i = covered; i < n; i++) {
+            byte[] e = new byte[ID_LEN];
+            records.get(HEADER_LEN + i * RECORD_LEN, e, 0, Pack.HASH_LEN);
+            ByteBuffer.wrap(e).putInt(Pack.HASH_LEN, i);
+            tail.add(e);
+            fanout[e[0] & 0xff] += 1;
+        }
+        tail.sort((a, b) -> Arrays.compareUnsigned(a, 0, Pack.HASH_LEN,
+                b, 0, Pack.HASH_LEN));
+        for (int b = 0, sum = 0; b < FANOUT; b++) {
+            sum += fanout[b];
+            fanout[b] = sum + (covered == 0 ? 0 : old.getInt(8 + 4 * b));
+        }
+        File tmp = null;
+        try {
+            scratch.mkdir();
+            tmp = File.createTempFile("ids", null, scratch);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(IDS_MAGIC);
+                out.writeInt(n);
+                for (int f : fanout) {
+                    out.writeInt(f);
+                }
+                byte[] e = new byte[ID_LEN];
+                int j = 0;
+                for (int i = 0; i < covered; i++) {
+                    old.get(IDS_HEADER + i * ID_LEN, e);
+                    while (j < tail.size() && Arrays.compareUnsigned(
+                            tail.get(j), 0, Pack.HASH_LEN,
+                            e, 0, Pack.HASH_LEN) < 0) {
+                        out.write(tail.get(j));
+                        j += 1;
+                    }
+                    out.write(e);
+                }
+                for (; j < tail.size(); j++) {
+                    out.write(tail.get(j));
+                }
+            }
+            LockFile.move(tmp, idsFile);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /** map the id table.
+     * @return mapped table, or null if there is none
+     * */
+    private MappedByteBuffer mapIds() {
+        if (idsFile.length() < IDS_HEADER) {
+            return null;
+        }
+        MappedByteBuffer ids = map(idsFile);
+        return ids.getInt(0) == IDS_MAGIC ? ids : null;
+    }
+
+    /** append a commit after those of its ancestors missing from the
+     * graph, parents first. Called with the graph locked.
+     * @param want commit id
+     * @param wantCommit the commit
+     * */
+    private void add(String want, Commit wantCommit) {
+        HashMap<String, Commit> read = new HashMap<String, Commit>();
+        read.put(want, wantCommit);
+        ArrayDeque<String> stack = new ArrayDeque<String>();
+        stack.push(want);
+        while (!stack.isEmpty()) {
+            String id = stack.peek();
+            if (indexOf(id) != NONE) {
+                stack.pop();
+                continue;
+            }
+            Commit c = read.computeIfAbsent(id, repo::readCommit);
+            String p = c.getParentCommit();
+            String p2 = c.getSecondParent();
+            int parent = p == null ? NONE : indexOf(p);
+            int parent2 = p2 == null ? NONE : indexOf(p2);
+            if (p != null && parent == NONE) {
+                stack.push(p);
+                continue;
+            }
+            if (p2 != null && parent2 == NONE) {
+                stack.push(p2);
+                continue;
+            }
+            stack.pop();
+            int generation = 1 + Math.max(
+                    parent == NONE ? 0 : generation(parent),
+                    parent2 == NONE ? 0 : generation(parent2));
+            write(id, parent, parent2, generation, c);
+            unmap();
+            size += 1;
+        }
+    }
+
+    /** count the records covered by the id table.
+     * @return records found through the table rather than by scanning
+     * */
+    private int covered() {
+        return ids() == null ? 0 : Math.min(ids().getInt(4), size);
+    }
+
+    /** number of commits in the graph.
+     * @return record count
+     * */
+    int size() {
+        return size;
+    }
+
+    /** find the record of a commit. Records newer than the id table are
+     * scanned newest first, so the head is found at once; the others are
+     * binary searched in the table between the fanout bounds of the
+     * first id byte.
+     * @param id commit id
+     * @return record number, or NONE if the commit is not in the graph
+     * */
+    int indexOf(String id) {
+        if (!Blobs.HASH_NAME.matcher(id).matches()) {
+            return NONE;
+        }
+        byte[] key = Pack.toRaw(id);
+        byte[] raw = new byte[Pack.HASH_LEN];
+        int covered = covered();
+        for (int i = size - 1; i >= covered; i--) {
+            records().get(HEADER_LEN + i * RECORD_LEN, raw);
+            if (Arrays.equals(raw, key)) {
+                return i;
+            }
+        }
+        MappedByteBuffer ids = ids();
+        if (ids == null) {
+            return NONE;
+        }
+        int b = key[0] & 0xff;
+        int lo = b == 0 ? 0 : ids.getInt(8 + 4 * (b - 1));
+        int hi = ids.getInt(8 + 4 * b) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            ids.get(IDS_HEADER + mid * ID_LEN, raw);
+            int cmp = Arrays.compareUnsigned(raw, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                int i = ids.getInt(IDS_HEADER + mid * ID_LEN + Pack.HASH_LEN);
+                return i < size ? i : NONE;
+            }
+        }
+        return NONE;
+    }
+
+    /** get the id of a record.
+     * @param i record number
+     * @return commit id
+     * */
+    String id(int i) {
+        byte[] raw = new byte[Pack.HASH_LEN];
+        records().get(HEADER_LEN + i * RECORD_LEN, raw);
+        return Blobs.toHex(raw);
+    }
+
+    /** get the first parent of a record.
+     * @param i record number
+     * @return parent record number, or NONE
+     * */
+    int parent(int i) {
+        return records().getInt(HEADER_LEN + i * RECORD_LEN + Pack.HASH_LEN);
+    }
+
+    /** get the second parent of a record.
+     * @param i record number
+     * @return parent record number, or NONE
+     * */
+    int secondParent(int i) {
+        return records().getInt(HEADER_LEN + i * RECORD_LEN
+                + Pack.HASH_LEN + 4);
+    }
+
+    /** get the generation number of a record, one more than the largest
+     * generation of its parents.
+     * @param i record number
+     * @return generation number
+     * */
+    int generation(int i) {
+        return records().getInt(HEADER_LEN + i * RECORD_LEN
+                + Pack.HASH_LEN + 8);
+    }
+
+    /** get the commit date of a record.
+     * @param i record number
+     * @return commit date
+     * */
+    Date date(int i) {
+        return new Date(records().getLong(HEADER_LEN + i * RECORD_LEN
+                + Pack.HASH_LEN + 12));
+    }
+
+    /** get the commit message of a record.
+     * @param i record number
+     * @return commit message
+     * */
+    String message(int i) {
+        long at = records().getLong(HEADER_LEN + i * RECORD_LEN
+                + Pack.HASH_LEN + 20);
+        ByteBuffer msg = readMessages(at + 4, readMessages(at, 4).getInt());
+        return new String(msg.array(), StandardCharsets.UTF_8);
+    }
+
+    /** check a record's filter for a path.
+     * @param i record number
+     * @param path file or directory path
+     * @return false if the commit certainly did not change the path
+     * relative to its first parent
+     * */
+    boolean mayHaveChanged(int i, String path) {
+        long at = records().getLong(HEADER_LEN + i * RECORD_LEN
+                + Pack.HASH_LEN + 20);
+        long filterAt = at + 4 + readMessages(at, 4).getInt();
+        int len = readMessages(filterAt, 4).getInt();
+        return len < 0 || PathFilter.mayContain(
+                readMessages(filterAt + 4, len), 0, len, path);
+    }
+
+    /** check whether one commit is an ancestor of another. Commits with
+     * a generation number at or below the ancestor's are never expanded.
+     * @param ancestor record number of the candidate ancestor
+     * @param of record number of the descendant
+     * @return true if ancestor is reachable from of
+     * */
+    boolean isAncestor(int ancestor, int of) {
+        int floor = generation(ancestor);
+        ArrayDeque<Integer> todo = new ArrayDeque<Integer>();
+        HashSet<Integer> seen = new HashSet<Integer>();
+        todo.push(of);
+        while (!todo.isEmpty()) {
+            int i = todo.pop();
+            if (i == ancestor) {
+                return true;
+            }
+            if (i == NONE || generation(i) <= floor || !seen.add(i)) {
+                continue;
+            }
+            todo.push(parent(i));
+            todo.push(secondParent(i));
+        }
+        return false;
+    }
+
+    /** find the latest common ancestor of two commits. Records are
+     * visited in decreasing generation order, painted with the side they
+     * were reached from; the first record reached from both sides is the
+     * split point, so only history newer than it is visited.
+     * @param a record number of one commit
+     * @param b record number of the other
+     * @return record number of the split point, or NONE
+     * */
+    int mergeBase(int a, int b) {
+        HashMap<Integer, Integer> paint = new HashMap<Integer, Integer>();
+        PriorityQueue<Integer> queue = new PriorityQueue<Integer>(
+                (x, y) -> Integer.compare(generation(y), generation(x)));
+        paint.put(a, 1);
+        paint.merge(b, 2, (x, y) -> x | y);
+        queue.add(a);
+        if (a != b) {
+            queue.add(b);
+        }
+        while (!queue.isEmpty()) {
+            int i = queue.poll();
+            int colour = paint.get(i);
+            if (colour == 3) {
+                return i;
+            }
+            for (int p : new int[] {parent(i), secondParent(i)}) {
+                if (p == NONE) {
+                    continue;
+                }
+                Integer old = paint.get(p);
+                if (old == null) {
+                    paint.put(p, colour);
+                    queue.add(p);
+                } else if ((old | colour) != old) {
+                    paint.put(p, old | colour);
+                }
+            }
+        }
+        return NONE;
+    }
+
+    /** list the first parent chain of a record.
+     * @param i record number to start from
+     * @param limit maximum number of records, or negative for no limit
+     * @return record numbers, newest first
+     * */
+    List<Integer> firstParents(int i, int limit) {
+        ArrayList<Integer> result = new ArrayList<Integer>();
+        while (i != NONE && (limit < 0 || result.size() < limit)) {
+            result.add(i);
+            i = parent(i);
+        }
+        return result;
+    }
+
+    /** write the graph header. */
+    private void writeHeader() {
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(graphFile))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+        Utils.writeContents(messages, new byte[0]);
+    }
+
+    /** list the files a commit changed relative to its first parent.
+     * @param c the commit
+     * @return changed file paths, or null if the commit or its parent
+     * predates trees
+     * */
+    private List<String> changedFiles(Commit c) {
+        String parentTree = null;
+        if (c.getParentCommit() != null) {
+            Commit p = repo.readCommit(c.getParentCommit());
+            if (!p.hasTree()) {
+                return null;
+            }
+            parentTree = p.getTree();
+        }
+        if (!c.hasTree()) {
+            return null;
+        }
+        ArrayList<String> changed = new ArrayList<String>();
+        repo.trees().diff(parentTree, c.getTree(), "",
+                (path, from, to) -> changed.add(path));
+        return changed;
+    }
+
+    /** append a record, its message and its filter.
+     * @param id commit id
+     * @param parent first parent record number
+     * @param parent2 second parent record number
+     * @param generation generation number
+     * @param c the commit
+     * */
+    private void write(String id, int parent, int parent2,
+                              int generation, Commit c) {
+        long msgAt = messages.length();
+        byte[] msg = c.getLog().getBytes(StandardCharsets.UTF_8);
+        List<String> changed = changedFiles(c);
+        byte[] filter = changed == null ? null : PathFilter.of(changed);
+        try (DataOutputStream m = new DataOutputStream(
+                new BufferedOutputStream(
+                        new FileOutputStream(messages, true)))) {
+            m.writeInt(msg.length);
+            m.write(msg);
+            m.writeInt(filter == null ? -1 : filter.length);
+            if (filter != null) {
+                m.write(filter);
+            }
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(
+                        new FileOutputStream(graphFile, true)))) {
+            out.write(Pack.toRaw(id));
+            out.writeInt(parent);
+            out.writeInt(parent2);
+            out.writeInt(generation);
+            out.writeLong(c.getDate().getTime());
+            out.writeLong(msgAt);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** map the graph file.
+     * @return mapped records
+     * */
+    private MappedByteBuffer records() {
+        if (mappedRecords == null) {
+            mappedRecords = map(graphFile);
+            if (mappedRecords.getInt(0) != MAGIC) {
+                throw new StorageException("Corrupt commit graph.");
+            }
+        }
+        return mappedRecords;
+    }
+
+    /** map the id table.
+     * @return mapped table, or null if there is none
+     * */
+    private MappedByteBuffer ids() {
+        if (mappedIds == null) {
+            mappedIds = mapIds();
+        }
+        return mappedIds;
+    }
+
+    /** read part of the message file, which is kept open and read at
+     * long offsets, so it may grow past what one mapping can hold.
+     * @param at file offset
+     * @param len number of bytes
+     * @return buffer holding the bytes
+     * */
+    private ByteBuffer readMessages(long at, int len) {
+        try {
+            if (messageFile == null) {
+                messageFile = FileChannel.open(messages.toPath());
+            }
+            ByteBuffer buf = ByteBuffer.allocate(len);
+            readFully(messageFile, buf, at);
+            buf.flip();
+            return buf;
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** drop mappings after the files grew. */
+    private void unmap() {
+        mappedRecords = null;
+        mappedIds = null;
+    }
+
+    /** map a whole file read only.
+     * @param f file to map
+     * @return mapped file
+     * */
+    private static MappedByteBuffer map(File f) {
+        try (FileChannel ch = FileChannel.open(f.toPath())) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** repository the graph belongs to. */
+    private Repository repo;
+    /** graph file. */
+    private File graphFile;
+    /** commit message file. */
+    private File messages;
+    /** id table file. */
+    private File idsFile;
+    /** scratch folder of the repository. */
+    private File scratch;
+    /** true once the graph was read. */
+    private boolean loaded;
+    /** number of records. */
+    private int size;
+    /** mapped graph file. */
+    private MappedByteBuffer mappedRecords;
+    /** open message file. */
+    private FileChannel messageFile;
+    /** mapped id table, or null until first use or if there is none. */
+    private MappedByteBuffer mappedIds;
+}
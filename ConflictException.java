@@ -0,0 +1,16 @@
+package gitlet;
+
+/** Thrown when a command cannot go ahead because of the state of the
+ * repository: something already exists, work would be lost, or another
+ * process holds a lock or moved a branch in between.
+ * @author Yizhang Lin
+ * */
+public class ConflictException extends GitletException {
+    /** initialize ConflictException.
+     * @param msg message format, as for String.format
+     * @param args arguments of the format
+     * */
+    ConflictException(String msg, Object... args) {
+        super(String.format(msg, args));
+    }
+}
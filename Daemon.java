@@ -0,0 +1,254 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Long running server owning one repository. Clients forward their
+ * command line over a Unix domain socket in the metadata folder and get
+ * back the output and exit status the command would have produced.
+ * Commands run one at a time, so the decoded commits, trees, packs and
+ * commit graph held by this process stay valid between them; caches of
+ * mutable files are dropped whenever another process changed those files.
+ * @author Yizhang Lin
+ * */
+class Daemon {
+    /** name of the socket clients connect to, in the metadata folder. */
+    static final String SOCKET = "daemon.sock";
+    /** most clients served at once. */
+    static final int MAX_CLIENTS = 16;
+    /** commands that rewrite storage wholesale. */
+    static final List<String> MAINTENANCE =
+            Arrays.asList("migrate", "pack", "convert", "gc");
+
+    /** initialize Daemon.
+     * @param r the repository served
+     * */
+    Daemon(Repository r) {
+        repo = r;
+        socket = socket(r.root());
+    }
+
+    /** serve commands until the process is killed. */
+    void serve() {
+        if (socket.exists()) {
+            try (SocketChannel ch = connect(socket)) {
+                Utils.message("A gitlet daemon is already running.");
+                return;
+            } catch (IOException excp) {
+                socket.delete();
+            }
+        }
+        ExecutorService clients = Executors.newFixedThreadPool(MAX_CLIENTS);
+        try (ServerSocketChannel server =
+                     ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket.toPath()));
+            socket.deleteOnExit();
+            stamp = stamp();
+            while (true) {
+                SocketChannel ch = server.accept();
+                clients.submit(() -> handle(ch));
+            }
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** forward a command to a daemon running for a working directory.
+     * @param root root of the working directory
+     * @param args command and operands
+     * @return false if no daemon is running and the command must be run
+     * in this process
+     * */
+    static boolean forward(File root, String... args) {
+        File sock = socket(root);
+        if (!sock.exists()) {
+            return false;
+        }
+        SocketChannel ch;
+        try {
+            ch = connect(sock);
+        } catch (IOException excp) {
+            return false;
+        }
+        int status;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(ch)));
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(ch)))) {
+            out.writeInt(args.length);
+            for (String a : args) {
+                out.writeUTF(a);
+            }
+            out.flush();
+            status = in.readInt();
+            System.out.write(readBytes(in));
+            System.out.flush();
+            System.err.write(readBytes(in));
+            System.err.flush();
+        } catch (EOFException excp) {
+            System.err.println("Lost connection to the gitlet daemon.");
+            status = 1;
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+        if (status != 0) {
+            System.exit(status);
+        }
+        return true;
+    }
+
+    /** answer one client.
+     * @param ch client connection
+     * */
+    private void handle(SocketChannel ch) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(ch)));
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(ch)))) {
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+            int status = execute(args, stdout, stderr);
+            out.writeInt(status);
+            writeBytes(out, stdout.toByteArray());
+            writeBytes(out, stderr.toByteArray());
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** run a command with its output captured.
+     * @param args command and operands
+     * @param stdout receives standard output
+     * @param stderr receives standard error
+     * @return exit status of the command
+     * */
+    private int execute(String[] args, ByteArrayOutputStream stdout,
+                        ByteArrayOutputStream stderr) {
+        synchronized (lock) {
+            PrintStream oldOut = System.out;
+            PrintStream oldErr = System.err;
+            System.setOut(new PrintStream(stdout, true));
+            System.setErr(new PrintStream(stderr, true));
+            int status = 0;
+            args = Trace.configure(args, null);
+            try (Trace.Span span = Trace.begin("command")) {
+                if (!stamp().equals(stamp)) {
+                    repo.reload();
+                }
+                Main.run(repo, repo.root(), args);
+            } catch (GitletException excp) {
+                Utils.message(excp.getMessage());
+            } catch (RuntimeException excp) {
+                System.err.print("Exception in thread \"main\" ");
+                excp.printStackTrace();
+                repo.reload();
+                status = 1;
+            } finally {
+                if (args.length > 0 && MAINTENANCE.contains(args[0])) {
+                    repo.reload();
+                }
+                stamp = stamp();
+                Trace.report(System.err);
+                System.out.flush();
+                System.err.flush();
+                System.setOut(oldOut);
+                System.setErr(oldErr);
+            }
+            return status;
+        }
+    }
+
+    /** describe the mutable files backing the caches.
+     * @return sizes and modification times of those files
+     * */
+    private String stamp() {
+        StringBuilder s = new StringBuilder();
+        File gitDir = repo.gitDir();
+        for (String name : new String[] {CommitGraph.GRAPH,
+            CommitGraph.MESSAGES}) {
+            File f = Utils.join(gitDir, name);
+            s.append(f.length()).append(':').append(f.lastModified())
+                    .append(' ');
+        }
+        File[] packs = Utils.join(gitDir, Pack.DIR).listFiles();
+        if (packs != null) {
+            Arrays.sort(packs);
+            for (File f : packs) {
+                s.append(f.getName()).append(':').append(f.length())
+                        .append(':').append(f.lastModified()).append(' ');
+            }
+        }
+        return s.toString();
+    }
+
+    /** find the socket of the daemon of a working directory, as an
+     * absolute path, so the address does not depend on the directory a
+     * process resolves it from.
+     * @param root root of the working directory
+     * @return the socket file
+     * */
+    private static File socket(File root) {
+        return root.toPath().toAbsolutePath().normalize()
+                .resolve(Repository.GIT_DIR).resolve(SOCKET).toFile();
+    }
+
+    /** connect to a daemon socket.
+     * @param sock the socket file
+     * @return open connection
+     * @throws IOException if no daemon is listening
+     * */
+    private static SocketChannel connect(File sock) throws IOException {
+        return SocketChannel.open(UnixDomainSocketAddress.of(sock.toPath()));
+    }
+
+    /** write a length prefixed byte array.
+     * @param out destination
+     * @param b bytes to write
+     * @throws IOException on write failure
+     * */
+    private static void writeBytes(DataOutputStream out, byte[] b)
+            throws IOException {
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    /** read a length prefixed byte array.
+     * @param in source
+     * @return bytes read
+     * @throws IOException on read failure
+     * */
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return b;
+    }
+
+    /** the repository served. */
+    private Repository repo;
+    /** socket clients connect to. */
+    private File socket;
+    /** guards command execution. */
+    private final Object lock = new Object();
+    /** state of mutable files after the last command. */
+    private String stamp;
+}
@@ -0,0 +1,293 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/** Line by line comparison of two versions of a file, printed as a
+ * unified diff. Lines are interned to integers shared by both versions,
+ * so lines are compared as numbers, and the shortest edit script is
+ * found with Myers' algorithm in its linear space form: the middle snake
+ * of an optimal path is found by searching from both ends at once, then
+ * the parts before and after it are solved in turn. Common leading and
+ * trailing lines are stripped at every level.
+ * @author Yizhang Lin
+ * */
+class Diff {
+    /** unchanged lines shown around each change. */
+    static final int CONTEXT = 3;
+    /** bytes searched for a NUL to tell binary files. */
+    static final int BINARY_PROBE = 8000;
+
+    /** initialize Diff.
+     * @param before line ids of the first version
+     * @param after line ids of the second version
+     * */
+    private Diff(int[] before, int[] after) {
+        a = before;
+        b = after;
+        removed = new boolean[a.length];
+        added = new boolean[b.length];
+        int max = (a.length + b.length + 1) / 2 + 1;
+        forward = new int[2 * max + 1];
+        backward = new int[2 * max + 1];
+    }
+
+    /** compare two versions of a file.
+     * @param path file path
+     * @param before contents of the first version, or null if absent
+     * @param after contents of the second version, or null if absent
+     * @return unified diff, empty if the contents are equal
+     * */
+    static String unified(String path, byte[] before, byte[] after) {
+        String from = before == null ? "/dev/null" : "a/" + path;
+        String to = after == null ? "/dev/null" : "b/" + path;
+        StringBuilder out = new StringBuilder();
+        out.append("--- ").append(from).append("\n+++ ").append(to)
+                .append("\n");
+        if (isBinary(before) || isBinary(after)) {
+            out.append("Binary files ").append(from).append(" and ")
+                    .append(to).append(" differ\n");
+            return out.toString();
+        }
+        try (Trace.Span span = Trace.begin("diff")) {
+            HashMap<String, Integer> ids = new HashMap<String, Integer>();
+            ArrayList<String> text = new ArrayList<String>();
+            int[] x = intern(before, ids, text);
+            int[] y = intern(after, ids, text);
+            Diff d = new Diff(x, y);
+            d.compare(0, x.length, 0, y.length);
+            d.print(text, out);
+        }
+        return out.toString();
+    }
+
+    /** solve part of the comparison, marking removed and added lines.
+     * @param aLo first line of the part in the first version
+     * @param aHi end of the part in the first version
+     * @param bLo first line of the part in the second version
+     * @param bHi end of the part in the second version
+     * */
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            aHi -= 1;
+            bHi -= 1;
+        }
+        if (aLo == aHi) {
+            for (int j = bLo; j < bHi; j++) {
+                added[j] = true;
+            }
+        } else if (bLo == bHi) {
+            for (int i = aLo; i < aHi; i++) {
+                removed[i] = true;
+            }
+        } else {
+            int[] snake = middleSnake(aLo, aHi, bLo, bHi);
+            compare(aLo, snake[0], bLo, snake[1]);
+            compare(snake[2], aHi, snake[3], bHi);
+        }
+    }
+
+    /** find the middle snake of an optimal edit path. Diagonals are
+     * numbered by x - y, and the backward search runs over both parts
+     * reversed.
+     * @param aLo first line of the part in the first version
+     * @param aHi end of the part in the first version
+     * @param bLo first line of the part in the second version
+     * @param bHi end of the part in the second version
+     * @return start x and y and end x and y of the snake
+     * */
+    private int[] middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int off = forward.length / 2;
+        forward[off + 1] = 0;
+        backward[off + 1] = 0;
+        for (int d = 0; d <= (n + m + 1) / 2; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || k != d
+                        && forward[off + k - 1] < forward[off + k + 1]
+                        ? forward[off + k + 1] : forward[off + k - 1] + 1;
+                int y = x - k;
+                int x0 = x;
+                int y0 = y;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                forward[off + k] = x;
+                int kb = delta - k;
+                if (odd && kb >= -(d - 1) && kb <= d - 1
+                        && x + backward[off + kb] >= n) {
+                    return new int[] {aLo + x0, bLo + y0, aLo + x, bLo + y};
+                }
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || k != d
+                        && backward[off + k - 1] < backward[off + k + 1]
+                        ? backward[off + k + 1] : backward[off + k - 1] + 1;
+                int y = x - k;
+                int x0 = x;
+                int y0 = y;
+                while (x < n && y < m
+                        && a[aHi - 1 - x] == b[bHi - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                backward[off + k] = x;
+                int kf = delta - k;
+                if (!odd && kf >= -d && kf <= d
+                        && x + forward[off + kf] >= n) {
+                    return new int[] {aHi - x, bHi - y, aHi - x0, bHi - y0};
+                }
+            }
+        }
+        throw new IllegalStateException("no middle snake");
+    }
+
+    /** print the marked changes as hunks with context lines.
+     * @param text line contents by id
+     * @param out destination
+     * */
+    private void print(List<String> text, StringBuilder out) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            int ci = i;
+            int cj = j;
+            while (ci < a.length && cj < b.length && !removed[ci]
+                    && !added[cj]) {
+                ci += 1;
+                cj += 1;
+            }
+            if (ci == a.length && cj == b.length) {
+                return;
+            }
+            int hi = Math.max(i, ci - CONTEXT);
+            int hj = hi - ci + cj;
+            int ei = ci;
+            int ej = cj;
+            int same = 0;
+            while ((ei < a.length || ej < b.length) && same <= 2 * CONTEXT) {
+                if (ei < a.length && removed[ei]) {
+                    ei += 1;
+                    same = 0;
+                } else if (ej < b.length && added[ej]) {
+                    ej += 1;
+                    same = 0;
+                } else {
+                    ei += 1;
+                    ej += 1;
+                    same += 1;
+                }
+            }
+            int trim = Math.max(0, same - CONTEXT);
+            ei -= trim;
+            ej -= trim;
+            out.append("@@ -").append(start(hi, ei - hi)).append(',')
+                    .append(ei - hi).append(" +").append(start(hj, ej - hj))
+                    .append(',').append(ej - hj).append(" @@\n");
+            while (hi < ei || hj < ej) {
+                if (hi < ei && removed[hi]) {
+                    line(out, '-', text.get(a[hi]));
+                    hi += 1;
+                } else if (hj < ej && added[hj]) {
+                    line(out, '+', text.get(b[hj]));
+                    hj += 1;
+                } else {
+                    line(out, ' ', text.get(a[hi]));
+                    hi += 1;
+                    hj += 1;
+                }
+            }
+            i = ei;
+            j = ej;
+        }
+    }
+
+    /** number the first line of a hunk side the way diff does.
+     * @param first index of its first line
+     * @param count number of its lines
+     * @return line number, that of the line before for an empty side
+     * */
+    private static int start(int first, int count) {
+        return count == 0 ? first : first + 1;
+    }
+
+    /** print one line of a hunk.
+     * @param out destination
+     * @param mark "-", "+" or " "
+     * @param line the line, with its line end if it has one
+     * */
+    private static void line(StringBuilder out, char mark, String line) {
+        out.append(mark).append(line);
+        if (!line.endsWith("\n")) {
+            out.append("\n\\ No newline at end of file\n");
+        }
+    }
+
+    /** split contents into lines and number them.
+     * @param contents file contents, or null for none
+     * @param ids line ids so far, extended with new lines
+     * @param text line contents by id, extended with new lines
+     * @return line ids of the contents
+     * */
+    private static int[] intern(byte[] contents,
+                                HashMap<String, Integer> ids,
+                                List<String> text) {
+        if (contents == null) {
+            return new int[0];
+        }
+        String s = new String(contents, StandardCharsets.UTF_8);
+        ArrayList<Integer> lines = new ArrayList<Integer>();
+        int begin = 0;
+        while (begin < s.length()) {
+            int nl = s.indexOf('\n', begin);
+            int end = nl < 0 ? s.length() : nl + 1;
+            String line = s.substring(begin, end);
+            Integer id = ids.get(line);
+            if (id == null) {
+                id = text.size();
+                ids.put(line, id);
+                text.add(line);
+            }
+            lines.add(id);
+            begin = end;
+        }
+        return lines.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** check for a NUL byte near the start.
+     * @param contents file contents, or null
+     * @return true if the contents look binary
+     * */
+    private static boolean isBinary(byte[] contents) {
+        for (int i = 0; contents != null && i < contents.length
+                && i < BINARY_PROBE; i++) {
+            if (contents[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** line ids of the first version. */
+    private int[] a;
+    /** line ids of the second version. */
+    private int[] b;
+    /** lines of the first version that are removed. */
+    private boolean[] removed;
+    /** lines of the second version that are added. */
+    private boolean[] added;
+    /** furthest x reached on each diagonal searching forward. */
+    private int[] forward;
+    /** furthest x reached on each diagonal searching backward. */
+    private int[] backward;
+}
@@ -0,0 +1,372 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Garbage collector. Every commit, tree and blob reachable from a
+ * branch head or the staged area is marked, along with the chunks of
+ * blobs stored in chunks, then unreachable loose objects are deleted
+ * and packs are rewritten without them. Only the manifests on the list
+ * kept by Blobs are read for their chunks, and objects already missing
+ * are skipped. Objects younger than the grace period are kept, and
+ * commands freshen the blobs they reuse, so the objects of a command
+ * running at the same time survive. Object ids are held as sorted raw
+ * hashes with one mark bit each, about 20 bytes per object.
+ * @author Yizhang Lin
+ * */
+class GarbageCollector {
+    /** default grace period: two weeks, in milliseconds. */
+    static final long GRACE = 14L * 24 * 60 * 60 * 1000;
+    /** number of shard folders. */
+    static final int SHARDS = 256;
+
+    /** collect garbage. Loose objects are moved into shards first,
+     * except blobs without a header, whose place tells their format.
+     * @param repo the repository
+     * @param grace keep unreachable objects younger than this many
+     * milliseconds
+     * @return number of objects removed and bytes freed
+     * */
+    static long[] collect(Repository repo, long grace) {
+        long cutoff = System.currentTimeMillis() - grace;
+        File gitDir = repo.gitDir();
+        File[] dirs = {Utils.join(gitDir, Repository.COMMITS),
+            Utils.join(gitDir, Tree.TREES),
+            Utils.join(gitDir, Repository.FILES)};
+        Pack[] packs = repo.packs();
+        ObjectSet[] sets = new ObjectSet[dirs.length];
+        for (int k = 0; k < dirs.length; k++) {
+            if (k != Bundle.BLOB) {
+                ObjectDir.shard(dirs[k]);
+            }
+            sets[k] = ObjectSet.of(dirs[k], packs[k]);
+        }
+        ObjectSet commits = sets[0];
+        ObjectSet trees = sets[1];
+        ObjectSet blobs = sets[2];
+        Blobs store = repo.blobs();
+        Set<String> manifests = store.manifests();
+
+        for (String h : repo.getIndex().getAllAddedFiles().values()) {
+            markBlob(store, blobs, manifests, h);
+        }
+        ArrayDeque<String> stack = new ArrayDeque<String>();
+        for (String b : repo.branches()) {
+            stack.push(repo.branchHead(b));
+        }
+        ArrayList<String> roots = new ArrayList<String>();
+        while (!stack.isEmpty()) {
+            String id = stack.pop();
+            if (!commits.mark(id)) {
+                continue;
+            }
+            Commit c = repo.readCommit(id);
+            if (c.getParentCommit() != null) {
+                stack.push(c.getParentCommit());
+            }
+            if (c.getSecondParent() != null) {
+                stack.push(c.getSecondParent());
+            }
+            if (c.hasTree()) {
+                roots.add(c.getTree());
+            } else {
+                for (String h : c.getFiles().values()) {
+                    markBlob(store, blobs, manifests, h);
+                }
+            }
+        }
+        ForkJoinPool.commonPool().invoke(new MarkTrees(repo, roots, trees,
+                blobs, manifests));
+
+        long[] result = new long[2];
+        for (int k = 0; k < dirs.length; k++) {
+            sweep(dirs[k], sets[k], cutoff, result);
+            File packFile = packs[k].file();
+            if (packFile.isFile() && packFile.lastModified() < cutoff) {
+                long before = packFile.length();
+                result[0] += packs[k].retain(sets[k]::isLive);
+                result[1] += before - packs[k].file().length();
+            }
+            removeTemporary(dirs[k], false, cutoff);
+        }
+        removeTemporary(repo.scratch(), true, cutoff);
+        removeTemporary(Utils.join(gitDir, Pack.DIR), false, cutoff);
+        store.pruneManifests();
+        if (commits.size() > commits.marked()) {
+            repo.graph().build();
+            repo.graph().reload();
+        }
+        return result;
+    }
+
+    /** mark a blob and, if it is stored in chunks, its chunks. Only
+     * listed manifests are read, and a blob that is missing is skipped.
+     * @param store blob store of the repository
+     * @param blobs all blobs
+     * @param manifests blobs stored in chunks
+     * @param hash blob hash
+     * */
+    private static void markBlob(Blobs store, ObjectSet blobs,
+                                 Set<String> manifests, String hash) {
+        if (blobs.mark(hash) && manifests.contains(hash)) {
+            for (String c : store.chunks(hash)) {
+                blobs.mark(c);
+            }
+        }
+    }
+
+    /** delete unmarked loose objects last written before a cutoff.
+     * @param dir object folder
+     * @param set the objects of that folder, marked
+     * @param cutoff modification time limit
+     * @param result counts of objects removed and bytes freed
+     * */
+    private static void sweep(File dir, ObjectSet set, long cutoff,
+                              long[] result) {
+        for (int i = 0; i < set.size(); i++) {
+            if (set.isMarked(i)) {
+                continue;
+            }
+            File f = ObjectDir.path(dir, set.hashAt(i));
+            if (f.isFile() && f.lastModified() < cutoff) {
+                long len = f.length();
+                if (f.delete()) {
+                    result[0] += 1;
+                    result[1] += len;
+                    f.getParentFile().delete();
+                }
+            }
+        }
+    }
+
+    /** delete files left behind by interrupted writes.
+     * @param dir folder holding temporary files
+     * @param all true if every file in the folder is temporary, false
+     * if only those named ".tmp" are
+     * @param cutoff modification time limit
+     * */
+    private static void removeTemporary(File dir, boolean all,
+                                        long cutoff) {
+        List<String> names = Utils.plainFilenamesIn(dir);
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            File f = Utils.join(dir, name);
+            if ((all || name.endsWith(".tmp"))
+                    && f.lastModified() < cutoff) {
+                f.delete();
+            }
+        }
+    }
+
+    /** Marks trees and the blobs in them, forking per sub-tree. */
+    private static class MarkTrees extends RecursiveAction {
+        /** initialize MarkTrees.
+         * @param r the repository
+         * @param hashes trees to mark
+         * @param treeSet all trees
+         * @param blobSet all blobs
+         * @param chunked blobs stored in chunks
+         * */
+        MarkTrees(Repository r, List<String> hashes, ObjectSet treeSet,
+                  ObjectSet blobSet, Set<String> chunked) {
+            repo = r;
+            roots = hashes;
+            trees = treeSet;
+            blobs = blobSet;
+            manifests = chunked;
+        }
+
+        @Override
+        protected void compute() {
+            if (roots.size() != 1) {
+                ArrayList<MarkTrees> parts = new ArrayList<MarkTrees>();
+                for (String h : roots) {
+                    parts.add(new MarkTrees(repo, Arrays.asList(h), trees,
+                            blobs, manifests));
+                }
+                invokeAll(parts);
+                return;
+            }
+            String hash = roots.get(0);
+            int i = trees.indexOf(hash);
+            if (i < 0 || !trees.mark(i)) {
+                return;
+            }
+            ArrayList<String> children = new ArrayList<String>();
+            for (Tree.Entry e : repo.trees().read(hash).getEntries()) {
+                if (e.isTree()) {
+                    children.add(e.getHash());
+                } else {
+                    markBlob(repo.blobs(), blobs, manifests, e.getHash());
+                }
+            }
+            if (!children.isEmpty()) {
+                new MarkTrees(repo, children, trees, blobs, manifests)
+                        .compute();
+            }
+        }
+
+        /** the repository. */
+        private Repository repo;
+        /** trees to mark. */
+        private List<String> roots;
+        /** all trees. */
+        private ObjectSet trees;
+        /** all blobs. */
+        private ObjectSet blobs;
+        /** blobs stored in chunks. */
+        private Set<String> manifests;
+    }
+
+    /** Sorted set of object ids with a mark bit per object. */
+    private static class ObjectSet {
+        /** list the loose and packed objects of one kind. Shards are
+         * listed one at a time, in hash order, and merged with the
+         * sorted pack index.
+         * @param dir object folder
+         * @param pack pack of the same kind
+         * @return the objects, none marked
+         * */
+        static ObjectSet of(File dir, Pack pack) {
+            ObjectSet s = new ObjectSet();
+            int p = 0;
+            int packed = pack.size();
+            for (int shard = 0; shard < SHARDS; shard++) {
+                String prefix = String.format("%02x", shard);
+                TreeSet<String> names = new TreeSet<String>(
+                        ObjectDir.withPrefix(dir, prefix));
+                while (p < packed && pack.hashAt(p).startsWith(prefix)) {
+                    names.add(pack.hashAt(p));
+                    p += 1;
+                }
+                for (String h : names) {
+                    s.add(h);
+                }
+            }
+            s.marks = new AtomicLongArray((s.size + 63) / 64);
+            return s;
+        }
+
+        /** append an id larger than all ids added so far.
+         * @param hash object hash
+         * */
+        private void add(String hash) {
+            if ((size + 1) * Pack.HASH_LEN > hashes.length) {
+                hashes = Arrays.copyOf(hashes, 2 * hashes.length);
+            }
+            System.arraycopy(Pack.toRaw(hash), 0, hashes,
+                    size * Pack.HASH_LEN, Pack.HASH_LEN);
+            size += 1;
+        }
+
+        /** count objects.
+         * @return number of objects in the set
+         * */
+        int size() {
+            return size;
+        }
+
+        /** count marked objects.
+         * @return number of marked objects
+         * */
+        int marked() {
+            int n = 0;
+            for (int w = 0; w < marks.length(); w++) {
+                n += Long.bitCount(marks.get(w));
+            }
+            return n;
+        }
+
+        /** get an id.
+         * @param i position in the set
+         * @return object hash
+         * */
+        String hashAt(int i) {
+            return Blobs.toHex(Arrays.copyOfRange(hashes,
+                    i * Pack.HASH_LEN, (i + 1) * Pack.HASH_LEN));
+        }
+
+        /** binary search for an id.
+         * @param hash object hash
+         * @return position in the set, or -1
+         * */
+        int indexOf(String hash) {
+            byte[] key = Pack.toRaw(hash);
+            int lo = 0;
+            int hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int cmp = Arrays.compareUnsigned(hashes, mid * Pack.HASH_LEN,
+                        (mid + 1) * Pack.HASH_LEN, key, 0, Pack.HASH_LEN);
+                if (cmp < 0) {
+                    lo = mid + 1;
+                } else if (cmp > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        /** mark an object.
+         * @param hash object hash
+         * @return true if the object is in the set and was not marked
+         * */
+        boolean mark(String hash) {
+            int i = indexOf(hash);
+            return i >= 0 && mark(i);
+        }
+
+        /** mark an object.
+         * @param i position in the set
+         * @return true if the object was not marked
+         * */
+        boolean mark(int i) {
+            long bit = 1L << (i & 63);
+            while (true) {
+                long word = marks.get(i >>> 6);
+                if ((word & bit) != 0) {
+                    return false;
+                }
+                if (marks.compareAndSet(i >>> 6, word, word | bit)) {
+                    return true;
+                }
+            }
+        }
+
+        /** check a mark.
+         * @param i position in the set
+         * @return true if marked
+         * */
+        boolean isMarked(int i) {
+            return (marks.get(i >>> 6) & (1L << (i & 63))) != 0;
+        }
+
+        /** check if an object must be kept.
+         * @param hash object hash
+         * @return false only for objects of the set left unmarked
+         * */
+        boolean isLive(String hash) {
+            int i = indexOf(hash);
+            return i < 0 || isMarked(i);
+        }
+
+        /** raw hashes, sorted. */
+        private byte[] hashes = new byte[Pack.HASH_LEN * 64];
+        /** number of objects. */
+        private int size;
+        /** one mark bit per object. */
+        private AtomicLongArray marks;
+    }
+}
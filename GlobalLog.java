@@ -0,0 +1,256 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/** Append only record of every commit ever made. Each entry is stored
+ * as its length, its UTF-8 text and its length again, so that the file
+ * can be read newest first by walking backwards from the end.
+ * @author Yizhang Lin
+ * */
+class GlobalLog {
+    /** magic number opening the log. */
+    static final int MAGIC = 0x474c4731;
+    /** header length. */
+    static final int HEADER_LEN = 4;
+    /** size of the chunks read when walking backwards. */
+    static final int CHUNK = 1 << 16;
+
+    /** initialize GlobalLog.
+     * @param file the log
+     * */
+    GlobalLog(File file) {
+        log = file;
+    }
+
+    /** append an entry, first cutting off an entry torn by a crash.
+     * @param entry log text of one commit
+     * */
+    void append(String entry) {
+        upgrade();
+        byte[] raw = entry.getBytes(StandardCharsets.UTF_8);
+        try (LockFile lock = LockFile.acquire(log);
+             RandomAccessFile f =
+                     new RandomAccessFile(log, "rw")) {
+            long end = validEnd(f);
+            ByteBuffer buf = ByteBuffer.allocate(
+                    (end == 0 ? HEADER_LEN : 0) + raw.length + 8);
+            if (end == 0) {
+                buf.putInt(MAGIC);
+            }
+            buf.putInt(raw.length).put(raw).putInt(raw.length);
+            f.setLength(end);
+            f.seek(end);
+            f.write(buf.array());
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** find the end of the last whole entry. The trailing length of the
+     * last entry must match its leading length; if it does not, the
+     * entries are walked from the start.
+     * @param f the log
+     * @return offset just past the last whole entry, 0 if even the
+     * header is incomplete
+     * @throws IOException on read failure
+     * */
+    private static long validEnd(RandomAccessFile f) throws IOException {
+        long end = f.length();
+        if (end < HEADER_LEN) {
+            return 0;
+        }
+        if (end == HEADER_LEN) {
+            return end;
+        }
+        if (end >= HEADER_LEN + 8) {
+            f.seek(end - 4);
+            int len = f.readInt();
+            long start = end - 8 - len;
+            if (len >= 0 && start >= HEADER_LEN) {
+                f.seek(start);
+                if (f.readInt() == len) {
+                    return end;
+                }
+            }
+        }
+        long pos = HEADER_LEN;
+        while (pos + 8 <= end) {
+            f.seek(pos);
+            int len = f.readInt();
+            long next = pos + 8 + len;
+            if (len < 0 || next > end) {
+                break;
+            }
+            f.seek(next - 4);
+            if (f.readInt() != len) {
+                break;
+            }
+            pos = next;
+        }
+        return pos;
+    }
+
+    /** find the end of the last whole entry of the log.
+     * @return offset just past it
+     * */
+    private long validEnd() {
+        if (!log.exists()) {
+            return 0;
+        }
+        try (RandomAccessFile f =
+                     new RandomAccessFile(log, "r")) {
+            return validEnd(f);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** read all entries, oldest first, streaming the file forwards.
+     * @param action called with the text of each entry
+     * */
+    void oldestFirst(Consumer<String> action) {
+        upgrade();
+        long end = validEnd();
+        if (end <= HEADER_LEN) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(log), CHUNK))) {
+            in.skipNBytes(HEADER_LEN);
+            for (long pos = HEADER_LEN; pos < end;) {
+                byte[] raw = new byte[in.readInt()];
+                in.readFully(raw);
+                if (in.readInt() != raw.length) {
+                    throw new StorageException("Corrupt global log.");
+                }
+                pos += raw.length + 8;
+                action.accept(new String(raw, StandardCharsets.UTF_8));
+            }
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** iterate over all entries, newest first.
+     * @return iterator over entry texts
+     * */
+    Iterator<String> newestFirst() {
+        upgrade();
+        return new Iterator<String>() {
+            /** end of the next entry to return. */
+            private long pos = validEnd();
+            /** bytes of the file currently held in memory. */
+            private byte[] window = new byte[0];
+            /** file offset of window[0]. */
+            private long windowStart = pos;
+
+            @Override
+            public boolean hasNext() {
+                return pos > HEADER_LEN;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int len = ByteBuffer.wrap(bytes(pos - 4, 4)).getInt();
+                long start = pos - 4 - len;
+                if (len < 0 || start - 4 < HEADER_LEN) {
+                    throw new StorageException("Corrupt global log.");
+                }
+                String entry = new String(bytes(start, len),
+                        StandardCharsets.UTF_8);
+                if (ByteBuffer.wrap(bytes(start - 4, 4)).getInt() != len) {
+                    throw new StorageException("Corrupt global log.");
+                }
+                pos = start - 4;
+                return entry;
+            }
+
+            /** read bytes that lie at or before the current window,
+             * refilling the window with the preceding chunk if needed.
+             * @param at file offset
+             * @param n number of bytes
+             * @return the bytes
+             * */
+            private byte[] bytes(long at, int n) {
+                if (at < windowStart) {
+                    long end = at + n;
+                    long start = Math.max(0, Math.min(at, end - CHUNK));
+                    window = readAt(start, (int) (end - start));
+                    windowStart = start;
+                }
+                byte[] result = new byte[n];
+                System.arraycopy(window, (int) (at - windowStart),
+                        result, 0, n);
+                return result;
+            }
+        };
+    }
+
+    /** read part of the log.
+     * @param at file offset
+     * @param n number of bytes
+     * @return the bytes
+     * */
+    private byte[] readAt(long at, int n) {
+        try (RandomAccessFile f =
+                     new RandomAccessFile(log, "r")) {
+            byte[] result = new byte[n];
+            f.seek(at);
+            f.readFully(result);
+            return result;
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** rewrite a plain text log, newest entry first and entries
+     * separated by blank lines, into the record format. */
+    private void upgrade() {
+        if (log.length() < HEADER_LEN
+                || ByteBuffer.wrap(readAt(0, HEADER_LEN)).getInt() == MAGIC) {
+            return;
+        }
+        String[] entries = Utils.readContentsAsString(log)
+                .split("\n\n(?====\n)");
+        File tmp = new File(log.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            for (int i = entries.length - 1; i >= 0; i--) {
+                byte[] raw = entries[i].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(raw.length);
+                out.write(raw);
+                out.writeInt(raw.length);
+            }
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+        try {
+            Files.move(tmp.toPath(), log.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** the log. */
+    private File log;
+}
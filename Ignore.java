@@ -0,0 +1,403 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/** Ignore rules in the style of .gitignore: "*", "?", "[...]" and "**"
+ * globs, "!" to re-include, a leading or inner "/" to anchor a rule to
+ * the top directory and a trailing "/" to match directories only. The
+ * last matching rule decides. All rules are compiled into one
+ * nondeterministic automaton over path characters, turned into a
+ * deterministic one a state at a time as paths are fed to it, so each
+ * character costs one table lookup once warm. Directory paths end with
+ * "/", and a walker carries the state reached at a directory into its
+ * entries instead of matching whole paths again.
+ * @author Yizhang Lin
+ * */
+class Ignore {
+    /** rules applied before those of the ignore file. */
+    static final String[] BUILT_IN = {".gitlet/", ".DS_Store"};
+
+    /** initialize Ignore.
+     * @param rules lines of an ignore file
+     * */
+    Ignore(List<String> rules) {
+        nodes.add(new Node());
+        ArrayList<String> all = new ArrayList<String>(Arrays.asList(BUILT_IN));
+        all.addAll(rules);
+        for (String line : all) {
+            String rule = line.strip();
+            if (rule.isEmpty() || rule.startsWith("#")) {
+                continue;
+            }
+            boolean negate = rule.startsWith("!");
+            if (negate) {
+                rule = rule.substring(1);
+            }
+            int slash = rule.indexOf('/');
+            boolean anchored = slash >= 0 && slash < rule.length() - 1;
+            if (rule.startsWith("/")) {
+                rule = rule.substring(1);
+            }
+            if (!rule.isEmpty()) {
+                compile(rule, anchored, negated.size());
+                negated.add(negate);
+            }
+        }
+        TreeSet<Integer> bounds = new TreeSet<Integer>();
+        bounds.add(0);
+        for (Node n : nodes) {
+            for (int i = 0; n.ranges != null && i < n.ranges.length; i += 2) {
+                bounds.add(n.ranges[i]);
+                bounds.add(n.ranges[i + 1] + 1);
+            }
+        }
+        classBounds = bounds.stream().mapToInt(Integer::intValue).toArray();
+        for (char c = 0; c < asciiClasses.length; c++) {
+            asciiClasses[c] = classOf(c);
+        }
+        start = state(closure(new int[] {0}));
+    }
+
+    /** get the state for the top directory.
+     * @return start state
+     * */
+    int start() {
+        return start;
+    }
+
+    /** feed characters.
+     * @param state state before them
+     * @param s characters of a path
+     * @return state after them
+     * */
+    int step(int state, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            state = step(state, s.charAt(i));
+        }
+        return state;
+    }
+
+    /** feed one character.
+     * @param state state before it
+     * @param c character of a path
+     * @return state after it
+     * */
+    int step(int state, char c) {
+        int cls = c < asciiClasses.length ? asciiClasses[c] : classOf(c);
+        int next = states[state].next.get(cls);
+        return next != 0 ? next - 1 : transition(state, c, cls);
+    }
+
+    /** check the rules for the path leading to a state.
+     * @param state state after a whole path
+     * @return true if the path is ignored
+     * */
+    boolean isIgnored(int state) {
+        return states[state].ignored;
+    }
+
+    /** check the rules for a path, including its parent directories.
+     * @param path path from the top directory, separated by "/"
+     * @param dir true if the path names a directory
+     * @return true if the path or a directory above it is ignored
+     * */
+    boolean isIgnored(String path, boolean dir) {
+        int s = start;
+        for (int i = 0; i < path.length(); i++) {
+            s = step(s, path.charAt(i));
+            if (path.charAt(i) == '/' && isIgnored(s)) {
+                return true;
+            }
+        }
+        return isIgnored(dir ? step(s, '/') : s);
+    }
+
+    /** add one rule to the automaton.
+     * @param glob the rule without "!" and leading "/"
+     * @param anchored true if the rule only matches from the top
+     * @param index position of the rule
+     * */
+    private void compile(String glob, boolean anchored, int index) {
+        int begin = node();
+        nodes.get(0).addEps(begin);
+        int cur = anchored ? begin : anyDirs(begin);
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            boolean atDir = i == 0 || glob.charAt(i - 1) == '/';
+            if (glob.startsWith("**/", i) && atDir) {
+                cur = anyDirs(cur);
+                i += 3;
+            } else if (glob.startsWith("**", i) && atDir
+                    && i + 2 == glob.length()) {
+                cur = loop(cur, ANY, false);
+                i += 2;
+            } else if (c == '*') {
+                cur = loop(cur, SLASH, true);
+                while (i < glob.length() && glob.charAt(i) == '*') {
+                    i += 1;
+                }
+            } else if (c == '?') {
+                cur = edge(cur, SLASH, true);
+                i += 1;
+            } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+                int end = glob.indexOf(']', i + 2);
+                boolean neg = glob.charAt(i + 1) == '!'
+                        || glob.charAt(i + 1) == '^';
+                cur = edge(cur, ranges(glob.substring(neg ? i + 2 : i + 1,
+                        end), neg), neg);
+                i = end + 1;
+            } else {
+                if (c == '\\' && i + 1 < glob.length()) {
+                    i += 1;
+                    c = glob.charAt(i);
+                }
+                cur = edge(cur, new int[] {c, c}, false);
+                i += 1;
+            }
+        }
+        nodes.get(cur).accept = index;
+        if (!glob.endsWith("/") && nodes.get(cur).ranges == null) {
+            nodes.get(edge(cur, new int[] {'/', '/'}, false)).accept = index;
+        }
+    }
+
+    /** parse the inside of a bracket expression.
+     * @param set characters and ranges such as "a-z"
+     * @param negate true if the expression is negated
+     * @return character ranges, with "/" added when negated so that the
+     * expression never matches it
+     * */
+    private static int[] ranges(String set, boolean negate) {
+        ArrayList<Integer> r = new ArrayList<Integer>();
+        for (int i = 0; i < set.length(); i++) {
+            char lo = set.charAt(i);
+            char hi = lo;
+            if (i + 2 < set.length() && set.charAt(i + 1) == '-') {
+                hi = set.charAt(i + 2);
+                i += 2;
+            }
+            r.add((int) lo);
+            r.add((int) hi);
+        }
+        if (negate) {
+            r.add((int) '/');
+            r.add((int) '/');
+        }
+        return r.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** add a node.
+     * @return its number
+     * */
+    private int node() {
+        nodes.add(new Node());
+        return nodes.size() - 1;
+    }
+
+    /** add an edge on a set of characters to a new node.
+     * @param from node to leave, which has no other character edge
+     * @param set character ranges
+     * @param negate true to match characters outside the ranges
+     * @return the new node
+     * */
+    private int edge(int from, int[] set, boolean negate) {
+        int to = node();
+        Node n = nodes.get(from);
+        n.ranges = set;
+        n.negate = negate;
+        n.out = to;
+        return to;
+    }
+
+    /** repeat a set of characters any number of times.
+     * @param from node to leave, which has no other character edge
+     * @param set character ranges
+     * @param negate true to repeat characters outside the ranges
+     * @return node reached after the repetition
+     * */
+    private int loop(int from, int[] set, boolean negate) {
+        int to = node();
+        Node n = nodes.get(from);
+        n.ranges = set;
+        n.negate = negate;
+        n.out = from;
+        n.addEps(to);
+        return to;
+    }
+
+    /** match any number of leading directories, "(.* /)?".
+     * @param from node to leave
+     * @return node reached after the directories
+     * */
+    private int anyDirs(int from) {
+        int to = node();
+        int any = node();
+        nodes.get(from).addEps(to);
+        nodes.get(from).addEps(any);
+        int slash = loop(any, ANY, false);
+        nodes.get(slash).ranges = new int[] {'/', '/'};
+        nodes.get(slash).out = to;
+        return to;
+    }
+
+    /** find the character class of a character.
+     * @param c the character
+     * @return index of the class
+     * */
+    private int classOf(char c) {
+        int i = Arrays.binarySearch(classBounds, c);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /** compute and remember a transition of the deterministic automaton.
+     * @param state state to leave
+     * @param c character fed
+     * @param cls class of the character
+     * @return state reached
+     * */
+    private synchronized int transition(int state, char c, int cls) {
+        TreeSet<Integer> moved = new TreeSet<Integer>();
+        for (int n : states[state].set) {
+            if (nodes.get(n).matches(c)) {
+                moved.add(nodes.get(n).out);
+            }
+        }
+        int next = state(closure(moved.stream()
+                .mapToInt(Integer::intValue).toArray()));
+        states[state].next.set(cls, next + 1);
+        return next;
+    }
+
+    /** add every node reachable by empty edges.
+     * @param set nodes
+     * @return sorted nodes including those reachable from the set
+     * */
+    private int[] closure(int[] set) {
+        TreeSet<Integer> seen = new TreeSet<Integer>();
+        ArrayList<Integer> stack = new ArrayList<Integer>();
+        for (int n : set) {
+            stack.add(n);
+        }
+        while (!stack.isEmpty()) {
+            int n = stack.remove(stack.size() - 1);
+            if (seen.add(n)) {
+                for (int e : nodes.get(n).eps) {
+                    stack.add(e);
+                }
+            }
+        }
+        return seen.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** find or add the deterministic state for a set of nodes.
+     * @param set sorted nodes
+     * @return state number
+     * */
+    private synchronized int state(int[] set) {
+        String key = Arrays.toString(set);
+        Integer known = ids.get(key);
+        if (known != null) {
+            return known;
+        }
+        int rule = -1;
+        for (int n : set) {
+            rule = Math.max(rule, nodes.get(n).accept);
+        }
+        State s = new State(set, rule >= 0 && !negated.get(rule),
+                classBounds.length);
+        int id = ids.size();
+        if (id == states.length) {
+            State[] grown = Arrays.copyOf(states, 2 * id);
+            grown[id] = s;
+            states = grown;
+        } else {
+            states[id] = s;
+        }
+        ids.put(key, id);
+        return id;
+    }
+
+    /** Node of the nondeterministic automaton. */
+    private static class Node {
+        /** add an empty edge.
+         * @param to target node
+         * */
+        void addEps(int to) {
+            eps = Arrays.copyOf(eps, eps.length + 1);
+            eps[eps.length - 1] = to;
+        }
+
+        /** check the character edge.
+         * @param c the character
+         * @return true if the edge accepts it
+         * */
+        boolean matches(char c) {
+            if (ranges == null) {
+                return false;
+            }
+            boolean in = false;
+            for (int i = 0; i < ranges.length && !in; i += 2) {
+                in = ranges[i] <= c && c <= ranges[i + 1];
+            }
+            return in != negate;
+        }
+
+        /** character ranges of the edge, or null if there is none. */
+        private int[] ranges;
+        /** whether the edge takes characters outside the ranges. */
+        private boolean negate;
+        /** target of the character edge. */
+        private int out;
+        /** targets of empty edges. */
+        private int[] eps = new int[0];
+        /** rule accepted at this node, or -1. */
+        private int accept = -1;
+    }
+
+    /** State of the deterministic automaton. */
+    private static class State {
+        /** initialize State.
+         * @param nodes nodes of the nondeterministic automaton
+         * @param ignore whether paths reaching this state are ignored
+         * @param classes number of character classes
+         * */
+        State(int[] nodes, boolean ignore, int classes) {
+            set = nodes;
+            ignored = ignore;
+            next = new AtomicIntegerArray(classes);
+        }
+
+        /** nodes of the nondeterministic automaton. */
+        private int[] set;
+        /** whether paths reaching this state are ignored. */
+        private boolean ignored;
+        /** next state plus one by character class, 0 if not computed. */
+        private AtomicIntegerArray next;
+    }
+
+    /** any character. */
+    private static final int[] ANY = {0, Character.MAX_VALUE};
+    /** the path separator, excluded from single level wildcards. */
+    private static final int[] SLASH = {'/', '/'};
+
+    /** character classes of ASCII characters. */
+    private final int[] asciiClasses = new int[128];
+    /** lowest character of each character class, sorted. */
+    private int[] classBounds;
+    /** nodes of the nondeterministic automaton; node 0 starts. */
+    private ArrayList<Node> nodes = new ArrayList<Node>();
+    /** whether each rule re-includes, by position. */
+    private ArrayList<Boolean> negated = new ArrayList<Boolean>();
+    /** states of the deterministic automaton by their node sets. */
+    private HashMap<String, Integer> ids = new HashMap<String, Integer>();
+    /** states of the deterministic automaton. */
+    private volatile State[] states = new State[16];
+    /** state for the top directory. */
+    private int start;
+}
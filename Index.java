@@ -1,15 +1,33 @@
 package gitlet;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 /** Index class representing the staged area.
  * @author Yizhang Lin
  * */
 public class Index implements Serializable {
+    /** kept equal to the value computed for the original class, so that
+     * index files written before the stat cache still load. */
+    private static final long serialVersionUID = 5430077311907253372L;
+    /** files modified this close to the time they were stat'ed are
+     * always rehashed, in milliseconds. */
+    static final long RACY_WINDOW = 2000;
+    /** record tag of encoded indexes. */
+    static final String TAG = "GI";
+
     /** initialize Index. */
     public Index() {
         allAddedFiles = new HashMap<String, String>();
+        stats = new HashMap<String, Stat>();
     }
 
     /** get staged files.
@@ -19,6 +37,168 @@ public class Index implements Serializable {
         return allAddedFiles;
     }
 
+    /** get cached stat data.
+     * @return stat data of working files in fileName - Stat pairs
+     * */
+    public HashMap<String, Stat> getStats() {
+        if (stats == null) {
+            stats = new HashMap<String, Stat>();
+        }
+        return stats;
+    }
+
+    /** get the hash a working file had when it was last hashed, without
+     * checking whether it changed since.
+     * @param name file name
+     * @return the hash, or null if the file was never hashed
+     * */
+    public String knownHash(String name) {
+        Stat s = getStats().get(name);
+        return s == null ? null : s.hash;
+    }
+
+    /** look up the hash of a working file without reading it.
+     * @param name file name
+     * @param f the working file
+     * @return cached hash, or null if the file may have changed since
+     * it was last hashed
+     * */
+    public String cachedHash(String name, File f) {
+        Stat cached = getStats().get(name);
+        if (cached == null) {
+            return null;
+        }
+        Stat now = Stat.of(f, null);
+        if (now == null || now.size != cached.size
+                || now.mtime != cached.mtime || now.inode != cached.inode
+                || cached.mtime + RACY_WINDOW >= cached.checked) {
+            return null;
+        }
+        return cached.hash;
+    }
+
+    /** record stat data of a working file after hashing it.
+     * @param name file name
+     * @param f the working file
+     * @param hash hash of the file contents
+     * */
+    public void record(String name, File f, String hash) {
+        Stat now = Stat.of(f, hash);
+        if (now == null) {
+            getStats().remove(name);
+        } else {
+            getStats().put(name, now);
+        }
+    }
+
+    /** load the staged area from a file.
+     * @param f file to read
+     * @return the staged area
+     * */
+    public static Index load(File f) {
+        return Codec.decode(Utils.readContents(f), TAG, Index.class,
+                Index::read);
+    }
+
+    /** save the staged area to a file.
+     * @param f file to write
+     * @param scratch scratch folder of the repository holding the file
+     * */
+    public void save(File f, File scratch) {
+        LockFile.replace(f, scratch, Codec.encode(TAG, this::write));
+    }
+
+    /** write the record body.
+     * @param out destination
+     * @throws IOException on write failure
+     * */
+    private void write(DataOutput out) throws IOException {
+        Codec.writeVarint(out, allAddedFiles.size());
+        for (Map.Entry<String, String> e
+                : new TreeMap<String, String>(allAddedFiles).entrySet()) {
+            Codec.writeString(out, e.getKey());
+            Codec.writeHash(out, e.getValue());
+        }
+        Codec.writeVarint(out, getStats().size());
+        for (Map.Entry<String, Stat> e
+                : new TreeMap<String, Stat>(stats).entrySet()) {
+            Stat st = e.getValue();
+            Codec.writeString(out, e.getKey());
+            Codec.writeVarint(out, st.size);
+            out.writeLong(st.mtime);
+            Codec.writeVarint(out, st.inode);
+            out.writeLong(st.checked);
+            Codec.writeHash(out, st.hash);
+        }
+    }
+
+    /** read a record body.
+     * @param in source
+     * @param version format version
+     * @return the staged area
+     * @throws IOException on malformed input
+     * */
+    private static Index read(DataInput in, int version) throws IOException {
+        Index idx = new Index();
+        long n = Codec.readVarint(in);
+        for (long i = 0; i < n; i++) {
+            idx.allAddedFiles.put(Codec.readString(in), Codec.readHash(in));
+        }
+        n = Codec.readVarint(in);
+        for (long i = 0; i < n; i++) {
+            String name = Codec.readString(in);
+            Stat st = new Stat();
+            st.size = Codec.readVarint(in);
+            st.mtime = in.readLong();
+            st.inode = Codec.readVarint(in);
+            st.checked = in.readLong();
+            st.hash = Codec.readHash(in);
+            idx.stats.put(name, st);
+        }
+        return idx;
+    }
+
+    /** Stat data of one working file. */
+    static class Stat implements Serializable {
+        /** file size. */
+        private long size;
+        /** last modified time, in milliseconds. */
+        private long mtime;
+        /** inode number, or 0 where the filesystem has none. */
+        private long inode;
+        /** time the stat data was taken, in milliseconds. */
+        private long checked;
+        /** hash of the file contents. */
+        private String hash;
+
+        /** stat a file.
+         * @param f file to stat
+         * @param hash hash of the file contents
+         * @return stat data, or null if the file does not exist
+         * */
+        static Stat of(File f, String hash) {
+            Trace.count(Trace.Counter.FILES_STATED, 1);
+            Stat s = new Stat();
+            s.checked = System.currentTimeMillis();
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(
+                        f.toPath(), BasicFileAttributes.class);
+                s.size = attrs.size();
+                s.mtime = attrs.lastModifiedTime().toMillis();
+                Object ino = Files.getAttribute(f.toPath(), "unix:ino");
+                s.inode = ((Number) ino).longValue();
+            } catch (UnsupportedOperationException excp) {
+                s.inode = 0;
+            } catch (IOException excp) {
+                return null;
+            }
+            s.hash = hash;
+            return s;
+        }
+    }
+
     /** all staged files in fileName - hashFileName pair.*/
     private HashMap<String, String> allAddedFiles;
+    /** stat cache of working files in fileName - Stat pair. */
+    private HashMap<String, Stat> stats;
 }
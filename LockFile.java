@@ -0,0 +1,140 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+
+/** Exclusive lock on a repository file, held by creating a file named
+ * after it with a ".lock" suffix. Files guarded this way are replaced by
+ * writing a temporary file in the scratch folder of their repository and
+ * renaming it over the old one, so readers never see a partly written
+ * file and need no lock.
+ * @author Yizhang Lin
+ * */
+class LockFile implements AutoCloseable {
+    /** name of the scratch folder holding files being written. */
+    static final String SCRATCH = "tmp";
+    /** suffix of lock files. */
+    static final String SUFFIX = ".lock";
+    /** milliseconds to wait for a lock before giving up. */
+    static final long TIMEOUT = 10000;
+    /** longest pause between attempts to take a lock, in milliseconds. */
+    static final long MAX_BACKOFF = 50;
+
+    /** initialize LockFile.
+     * @param f the lock file, already created
+     * */
+    private LockFile(File f) {
+        lock = f;
+    }
+
+    /** take the lock on a file, waiting while another process holds it.
+     * @param target file to lock
+     * @return the held lock
+     * */
+    static LockFile acquire(File target) {
+        File f = new File(target.getPath() + SUFFIX);
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        long backoff = 1;
+        while (true) {
+            try {
+                Files.createFile(f.toPath());
+                return new LockFile(f);
+            } catch (FileAlreadyExistsException excp) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new ConflictException("Unable to lock %s; if no "
+                            + "other gitlet process is running, remove %s.",
+                            target.getName(), f.getPath());
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw Utils.error("Interrupted while waiting to lock %s.",
+                            target.getName());
+                }
+                backoff = Math.min(2 * backoff, MAX_BACKOFF);
+            } catch (IOException excp) {
+                throw new StorageException(excp);
+            }
+        }
+    }
+
+    /** release the lock. */
+    @Override
+    public void close() {
+        lock.delete();
+    }
+
+    /** replace the contents of a file in one step.
+     * @param target file to write
+     * @param scratch scratch folder of the repository holding the file
+     * @param contents strings or byte arrays to write
+     * */
+    static void replace(File target, File scratch, Object... contents) {
+        File tmp = null;
+        try (Trace.Span span = Trace.begin("write")) {
+            scratch.mkdir();
+            tmp = File.createTempFile("tmp", null, scratch);
+            Utils.writeContents(tmp, contents);
+            if (Trace.isOn()) {
+                Trace.count(Trace.Counter.BYTES_WRITTEN, tmp.length());
+            }
+            move(tmp, target);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /** rename a file over another one, atomically where the file system
+     * allows it.
+     * @param from file to move
+     * @param to destination
+     * @throws IOException on failure
+     * */
+    static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException excp) {
+            Files.move(from.toPath(), to.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** update a ref only if it still holds the value it was read with.
+     * @param ref branch head or other ref file
+     * @param scratch scratch folder of the repository holding the ref
+     * @param expected value the ref must hold, or null if it must not
+     * exist yet
+     * @param value new value, or null to delete the ref
+     * @return false if the ref held something other than expected
+     * */
+    static boolean compareAndSet(File ref, File scratch, String expected,
+                                 String value) {
+        try (LockFile l = acquire(ref)) {
+            String current = ref.isFile()
+                    ? Utils.readContentsAsString(ref) : null;
+            if (!Objects.equals(current, expected)) {
+                return false;
+            }
+            if (value == null) {
+                ref.delete();
+            } else {
+                replace(ref, scratch, value);
+            }
+            return true;
+        }
+    }
+
+    /** the lock file. */
+    private File lock;
+}
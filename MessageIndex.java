@@ -0,0 +1,282 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+
+/** Persistent index from commit messages, and from the words in them,
+ * to commit ids. Keys are hashed and spread over bucket files named by
+ * the first byte of the key hash; each bucket holds fixed width
+ * key hash, commit id records. The records at the front of a bucket are
+ * sorted by key hash, commits of one key in commit order, and binary
+ * searched; new records are appended after them and scanned, and are
+ * merged into the sorted part once TAIL_MAX of them have built up.
+ * @author Yizhang Lin
+ * */
+class MessageIndex {
+    /** name of the index folder in the metadata folder. */
+    static final String DIR = "msgIndex";
+    /** magic number opening a bucket. */
+    static final int MAGIC = 0x474d4931;
+    /** bucket header length: magic plus number of sorted records. */
+    static final int HEADER_LEN = 8;
+    /** record length: key hash plus commit id. */
+    static final int RECORD_LEN = 2 * Pack.HASH_LEN;
+    /** most records appended after the sorted part of a bucket. */
+    static final int TAIL_MAX = 1024;
+    /** bucket file prefix for whole messages. */
+    static final String EXACT = "m";
+    /** bucket file prefix for words. */
+    static final String WORD = "w";
+
+    /** initialize MessageIndex.
+     * @param indexDir index folder
+     * @param allLog global log the index is built from
+     * @param scratchDir scratch folder of the repository
+     * */
+    MessageIndex(File indexDir, GlobalLog allLog, File scratchDir) {
+        dir = indexDir;
+        built = Utils.join(indexDir, "built");
+        log = allLog;
+        scratch = scratchDir;
+    }
+
+    /** index a new commit.
+     * @param id commit id
+     * @param msg commit message
+     * */
+    void add(String id, String msg) {
+        if (!built.exists()) {
+            build();
+            return;
+        }
+        write(id, msg, true);
+    }
+
+    /** find commits by exact message.
+     * @param msg commit message
+     * @return commit ids, newest first
+     * */
+    List<String> exact(String msg) {
+        return lookup(EXACT, msg);
+    }
+
+    /** find commits whose message contains a word.
+     * @param word word to look for, in any case
+     * @return commit ids, newest first
+     * */
+    List<String> word(String word) {
+        return lookup(WORD, word.toLowerCase(Locale.ROOT));
+    }
+
+    /** rebuild the index from the global log, streamed oldest first.
+     * Records are appended unsorted and each bucket is sorted at the
+     * end, so memory is bounded by the largest bucket.
+     * */
+    void build() {
+        dir.mkdir();
+        for (String f : Utils.plainFilenamesIn(dir)) {
+            Utils.join(dir, f).delete();
+        }
+        log.oldestFirst(entry -> {
+            int idAt = entry.indexOf("commit ") + "commit ".length();
+            String id = entry.substring(idAt, idAt + Utils.UID_LENGTH);
+            int msgAt = entry.indexOf('\n', entry.indexOf("\nDate: ") + 1);
+            write(id, entry.substring(msgAt + 1), false);
+        });
+        for (String f : Utils.plainFilenamesIn(dir)) {
+            sort(Utils.join(dir, f));
+        }
+        Utils.writeContents(built, "");
+    }
+
+    /** write the records of one commit.
+     * @param id commit id
+     * @param msg commit message
+     * @param merge whether to sort buckets whose tail grew too long
+     * */
+    private void write(String id, String msg, boolean merge) {
+        append(EXACT, msg, id, merge);
+        LinkedHashSet<String> words = new LinkedHashSet<String>(
+                Arrays.asList(msg.toLowerCase(Locale.ROOT)
+                        .split("[^\\p{L}\\p{N}]+")));
+        for (String w : words) {
+            if (!w.isEmpty()) {
+                append(WORD, w, id, merge);
+            }
+        }
+    }
+
+    /** append a record to the bucket of a key.
+     * @param kind bucket file prefix
+     * @param key indexed key
+     * @param id commit id
+     * @param merge whether to sort the bucket if its tail grew too long
+     * */
+    private void append(String kind, String key, String id,
+                               boolean merge) {
+        String keyHash = Utils.sha1(key);
+        File bucket = Utils.join(dir, kind + keyHash.substring(0, 2));
+        boolean fresh = !bucket.exists();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(
+                        new FileOutputStream(bucket, true)))) {
+            if (fresh) {
+                out.writeInt(MAGIC);
+                out.writeInt(0);
+            }
+            out.write(Pack.toRaw(keyHash));
+            out.write(Pack.toRaw(id));
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+        if (merge) {
+            MappedByteBuffer buf = map(bucket);
+            if (records(buf) - buf.getInt(4) >= TAIL_MAX) {
+                sort(bucket);
+            }
+        }
+    }
+
+    /** merge the tail of a bucket into its sorted part. The sort is
+     * stable, so commits of one key stay in commit order.
+     * @param bucket bucket file
+     * */
+    private void sort(File bucket) {
+        MappedByteBuffer buf = map(bucket);
+        int n = records(buf);
+        ArrayList<byte[]> records = new ArrayList<byte[]>(n);
+        for (int i = 0; i < n; i++) {
+            byte[] r = new byte[RECORD_LEN];
+            buf.get(HEADER_LEN + i * RECORD_LEN, r);
+            records.add(r);
+        }
+        records.sort((a, b) -> Arrays.compareUnsigned(a, 0, Pack.HASH_LEN,
+                b, 0, Pack.HASH_LEN));
+        File tmp = null;
+        try {
+            scratch.mkdir();
+            tmp = File.createTempFile("bucket", null, scratch);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(n);
+                for (byte[] r : records) {
+                    out.write(r);
+                }
+            }
+            LockFile.move(tmp, bucket);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /** search the bucket of a key: the sorted part by binary search for
+     * the first record of the key, then the unsorted tail.
+     * @param kind bucket file prefix
+     * @param key indexed key
+     * @return commit ids recorded under the key, newest first
+     * */
+    private List<String> lookup(String kind, String key) {
+        if (!built.exists()) {
+            build();
+        }
+        String keyHash = Utils.sha1(key);
+        File bucket = Utils.join(dir, kind + keyHash.substring(0, 2));
+        ArrayList<String> result = new ArrayList<String>();
+        if (!bucket.exists()) {
+            return result;
+        }
+        MappedByteBuffer buf = map(bucket);
+        byte[] want = Pack.toRaw(keyHash);
+        byte[] raw = new byte[Pack.HASH_LEN];
+        int sorted = buf.getInt(4);
+        int lo = 0;
+        int hi = sorted;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            buf.get(HEADER_LEN + mid * RECORD_LEN, raw);
+            if (Arrays.compareUnsigned(raw, want) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        while (lo < sorted && match(buf, lo, want, result)) {
+            lo += 1;
+        }
+        for (int i = sorted; i < records(buf); i++) {
+            match(buf, i, want, result);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** collect the commit id of a record if it has a key hash.
+     * @param buf mapped bucket
+     * @param i record number
+     * @param want key hash
+     * @param result receives the commit id
+     * @return true if the record has the key hash
+     * */
+    private static boolean match(MappedByteBuffer buf, int i, byte[] want,
+                                 List<String> result) {
+        byte[] raw = new byte[Pack.HASH_LEN];
+        buf.get(HEADER_LEN + i * RECORD_LEN, raw);
+        if (!Arrays.equals(raw, want)) {
+            return false;
+        }
+        buf.get(HEADER_LEN + i * RECORD_LEN + Pack.HASH_LEN, raw);
+        result.add(Blobs.toHex(raw));
+        return true;
+    }
+
+    /** count the records of a bucket.
+     * @param buf mapped bucket
+     * @return number of records
+     * */
+    private static int records(MappedByteBuffer buf) {
+        return (buf.capacity() - HEADER_LEN) / RECORD_LEN;
+    }
+
+    /** map a bucket read only.
+     * @param bucket bucket file
+     * @return mapped bucket
+     * */
+    private static MappedByteBuffer map(File bucket) {
+        try (FileChannel ch = FileChannel.open(bucket.toPath())) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                    ch.size());
+            if (buf.capacity() < HEADER_LEN || buf.getInt(0) != MAGIC) {
+                throw new StorageException("Corrupt message index %s.",
+                        bucket.getName());
+            }
+            return buf;
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** index folder. */
+    private File dir;
+    /** file written once the index is complete. */
+    private File built;
+    /** global log the index is built from. */
+    private GlobalLog log;
+    /** scratch folder of the repository. */
+    private File scratch;
+}
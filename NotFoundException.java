@@ -0,0 +1,15 @@
+package gitlet;
+
+/** Thrown when a command names a branch, commit, file, remote or object
+ * that does not exist.
+ * @author Yizhang Lin
+ * */
+public class NotFoundException extends GitletException {
+    /** initialize NotFoundException.
+     * @param msg message format, as for String.format
+     * @param args arguments of the format
+     * */
+    NotFoundException(String msg, Object... args) {
+        super(String.format(msg, args));
+    }
+}
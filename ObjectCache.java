@@ -0,0 +1,79 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** In-memory cache of decoded objects keyed by hash, bounded by the
+ * total weight of its values and evicting the least recently used.
+ * Objects are content addressed, so a cached value never goes stale.
+ * @param <V> type of the cached values
+ * @author Yizhang Lin
+ * */
+class ObjectCache<V> {
+    /** initialize ObjectCache.
+     * @param maxWeight most total weight kept
+     * */
+    ObjectCache(long maxWeight) {
+        capacity = maxWeight;
+        entries = new LinkedHashMap<String, Node<V>>(16, 0.75f, true);
+    }
+
+    /** look up an object.
+     * @param hash object hash
+     * @return the cached value, or null
+     * */
+    synchronized V get(String hash) {
+        Node<V> n = entries.get(hash);
+        return n == null ? null : n.value;
+    }
+
+    /** add an object, evicting old ones to stay within capacity.
+     * Objects heavier than the whole cache are not kept.
+     * @param hash object hash
+     * @param value decoded object
+     * @param w weight of the object, usually its stored size
+     * */
+    synchronized void put(String hash, V value, long w) {
+        if (w > capacity) {
+            return;
+        }
+        Node<V> old = entries.put(hash, new Node<V>(value, w));
+        weight += w - (old == null ? 0 : old.weight);
+        Iterator<Map.Entry<String, Node<V>>> it = entries.entrySet().iterator();
+        while (weight > capacity && it.hasNext()) {
+            weight -= it.next().getValue().weight;
+            it.remove();
+        }
+    }
+
+    /** drop every cached object. */
+    synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /** A cached value and its weight.
+     * @param <V> type of the value */
+    private static class Node<V> {
+        /** initialize Node.
+         * @param v the value
+         * @param w its weight
+         * */
+        Node(V v, long w) {
+            value = v;
+            weight = w;
+        }
+        /** the value. */
+        private V value;
+        /** weight of the value. */
+        private long weight;
+    }
+
+    /** most total weight kept. */
+    private long capacity;
+    /** total weight of the cached values. */
+    private long weight;
+    /** cached values, least recently used first. */
+    private LinkedHashMap<String, Node<V>> entries;
+}
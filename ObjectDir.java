@@ -0,0 +1,162 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Layout of loose object folders. Objects are fanned out into
+ * sub-folders named by the first two hex digits of their hash; objects
+ * written before sharding was introduced sit directly in the folder and
+ * are still found there.
+ * @author Yizhang Lin
+ * */
+class ObjectDir {
+    /** length of shard folder names. */
+    static final int SHARD_LEN = 2;
+
+    /** locate a loose object.
+     * @param dir object folder
+     * @param hash object hash
+     * @return the file holding the object, which may not exist
+     * */
+    static File path(File dir, String hash) {
+        File sharded = sharded(dir, hash);
+        if (!sharded.exists()) {
+            File flat = Utils.join(dir, hash);
+            if (flat.exists()) {
+                return flat;
+            }
+        }
+        return sharded;
+    }
+
+    /** get the location a new object is written to, creating its shard
+     * folder if needed.
+     * @param dir object folder
+     * @param hash object hash
+     * @return the file to write
+     * */
+    static File create(File dir, String hash) {
+        File f = sharded(dir, hash);
+        f.getParentFile().mkdir();
+        return f;
+    }
+
+    /** write an object unless it is already stored. The object is
+     * written to a temporary file in the folder and renamed into place,
+     * so readers never see it partly written and writers need no lock.
+     * @param dir object folder
+     * @param hash object hash
+     * @param data stored bytes of the object
+     * */
+    static void write(File dir, String hash, byte[] data) {
+        File dest = create(dir, hash);
+        if (dest.isFile()) {
+            return;
+        }
+        File tmp = null;
+        Trace.count(Trace.Counter.BYTES_WRITTEN, data.length);
+        try (Trace.Span span = Trace.begin("write")) {
+            tmp = File.createTempFile("obj", null, dir);
+            Utils.writeContents(tmp, data);
+            LockFile.move(tmp, dest);
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /** list all loose objects.
+     * @param dir object folder
+     * @return hashes of loose objects
+     * */
+    static List<String> list(File dir) {
+        ArrayList<String> result = new ArrayList<String>();
+        for (String f : Utils.plainFilenamesIn(dir)) {
+            if (Blobs.HASH_NAME.matcher(f).matches()) {
+                result.add(f);
+            }
+        }
+        File[] shards = dir.listFiles(File::isDirectory);
+        if (shards != null) {
+            for (File shard : shards) {
+                result.addAll(inShard(shard));
+            }
+        }
+        return result;
+    }
+
+    /** list loose objects whose hash starts with a prefix. Only the one
+     * shard the prefix falls in is listed.
+     * @param dir object folder
+     * @param prefix hash prefix, at least SHARD_LEN digits long
+     * @return matching hashes
+     * */
+    static List<String> withPrefix(File dir, String prefix) {
+        ArrayList<String> result = new ArrayList<String>();
+        for (String h : inShard(Utils.join(dir,
+                prefix.substring(0, SHARD_LEN)))) {
+            if (h.startsWith(prefix)) {
+                result.add(h);
+            }
+        }
+        for (String f : Utils.plainFilenamesIn(dir)) {
+            if (f.startsWith(prefix)
+                    && Blobs.HASH_NAME.matcher(f).matches()) {
+                result.add(f);
+            }
+        }
+        return result;
+    }
+
+    /** move objects stored directly in a folder into their shards.
+     * @param dir object folder
+     * @return number of objects moved
+     * */
+    static int shard(File dir) {
+        int moved = 0;
+        for (String f : Utils.plainFilenamesIn(dir)) {
+            if (Blobs.HASH_NAME.matcher(f).matches()) {
+                File dest = create(dir, f);
+                if (dest.exists() || Utils.join(dir, f).renameTo(dest)) {
+                    Utils.join(dir, f).delete();
+                    moved += 1;
+                }
+            }
+        }
+        return moved;
+    }
+
+    /** get the sharded location of an object.
+     * @param dir object folder
+     * @param hash object hash
+     * @return the file
+     * */
+    static File sharded(File dir, String hash) {
+        return Utils.join(dir, hash.substring(0, SHARD_LEN),
+                hash.substring(SHARD_LEN));
+    }
+
+    /** list the objects of one shard.
+     * @param shard shard folder
+     * @return full hashes of its objects
+     * */
+    private static List<String> inShard(File shard) {
+        ArrayList<String> result = new ArrayList<String>();
+        List<String> names = Utils.plainFilenamesIn(shard);
+        if (names == null) {
+            return result;
+        }
+        for (String f : names) {
+            String hash = shard.getName() + f;
+            if (Blobs.HASH_NAME.matcher(hash).matches()) {
+                result.add(hash);
+            }
+        }
+        return result;
+    }
+}
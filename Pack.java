@@ -0,0 +1,567 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/** Pack file holding many objects of one kind, plus a sorted index of
+ * hash, offset and length records that is memory mapped and binary
+ * searched on lookup. Every rewrite of a pack writes a new generation,
+ * a pack and index pair named by a number, and publishes it by
+ * replacing the file naming the current generation, so a reader always
+ * pairs an index with the pack it was written for. Readers keep the
+ * pack of the generation they mapped open, and look for a newer one
+ * only when an object is missing from it.
+ * @author Yizhang Lin
+ * */
+class Pack {
+    /** name of the pack folder in the metadata folder. */
+    static final String DIR = "pack";
+    /** magic bytes opening an index file. */
+    static final int IDX_MAGIC = 0x47504931;
+    /** index header length: magic plus record count. */
+    static final int IDX_HEADER = 8;
+    /** raw hash length in bytes. */
+    static final int HASH_LEN = 20;
+    /** index record length: hash, offset and length. */
+    static final int RECORD_LEN = HASH_LEN + 16;
+
+    /** initialize Pack.
+     * @param looseDir folder holding the loose objects of this kind
+     * @param packDir folder holding the pack and index files
+     * @param scratchDir scratch folder of the repository
+     * @param name base name of the pack and index files
+     * */
+    Pack(File looseDir, File packDir, File scratchDir, String name) {
+        loose = looseDir;
+        dir = packDir;
+        scratch = scratchDir;
+        base = name;
+        head = Utils.join(packDir, name + ".current");
+    }
+
+    /** forget the mapped generation, so it is mapped again on next use. */
+    void reload() {
+        opened = null;
+    }
+
+    /** check if an object is in this pack.
+     * @param hash object hash
+     * @return true if packed
+     * */
+    boolean contains(String hash) {
+        return holding(hash).find(hash) >= 0;
+    }
+
+    /** read a packed object.
+     * @param hash object hash
+     * @return stored bytes of the object, or null if not packed
+     * */
+    byte[] read(String hash) {
+        ByteBuffer buf = slice(hash);
+        if (buf == null) {
+            return null;
+        }
+        byte[] result = new byte[buf.remaining()];
+        buf.get(result);
+        return result;
+    }
+
+    /** open a packed object.
+     * @param hash object hash
+     * @return stream over the stored bytes, or null if not packed
+     * */
+    InputStream open(String hash) {
+        ByteBuffer buf = slice(hash);
+        if (buf == null) {
+            return null;
+        }
+        return new InputStream() {
+            @Override
+            public int read() {
+                return buf.hasRemaining() ? buf.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (!buf.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, buf.remaining());
+                buf.get(b, off, n);
+                return n;
+            }
+        };
+    }
+
+    /** list hashes of all packed objects.
+     * @return packed hashes in sorted order
+     * */
+    List<String> hashes() {
+        ArrayList<String> result = new ArrayList<String>();
+        Generation g = index();
+        for (int i = 0; i < g.size(); i++) {
+            result.add(g.hashAt(i));
+        }
+        return result;
+    }
+
+    /** list packed objects whose hash starts with a prefix, by binary
+     * searching the index for the first candidate.
+     * @param prefix hex hash prefix
+     * @param limit stop after this many matches
+     * @return matching hashes
+     * */
+    List<String> withPrefix(String prefix, int limit) {
+        ArrayList<String> result = new ArrayList<String>();
+        Generation g = index();
+        int n = g.size();
+        int lo = 0;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (g.hashAt(mid).compareTo(prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int i = lo; i < n && result.size() < limit; i++) {
+            String h = g.hashAt(i);
+            if (!h.startsWith(prefix)) {
+                break;
+            }
+            result.add(h);
+        }
+        return result;
+    }
+
+    /** move every loose object of this kind into a new generation of
+     * the pack. Objects already packed are carried over; loose objects
+     * larger than a single mapping window stay loose. Only one process
+     * rewrites a pack at a time.
+     * @return number of objects newly packed
+     * */
+    int repack() {
+        dir.mkdir();
+        try (LockFile lock = LockFile.acquire(head)) {
+            Generation old = reopen();
+            String gen = next(old);
+            TreeMap<String, long[]> entries = new TreeMap<String, long[]>();
+            List<File> packed = new ArrayList<File>();
+            try (FileChannel out = create(packOf(gen))) {
+                long pos = 0;
+                if (old.pack != null) {
+                    long size = old.pack.size();
+                    while (pos < size) {
+                        pos += old.pack.transferTo(pos, size - pos, out);
+                    }
+                    for (int i = 0; i < old.size(); i++) {
+                        entries.put(old.hashAt(i), new long[] {
+                            old.offset(i), old.length(i)});
+                    }
+                }
+                for (String hash : ObjectDir.list(loose)) {
+                    File f = ObjectDir.path(loose, hash);
+                    if (f.length() > Integer.MAX_VALUE) {
+                        continue;
+                    }
+                    if (!entries.containsKey(hash)) {
+                        long len = f.length();
+                        try (FileChannel in = FileChannel.open(f.toPath())) {
+                            long done = 0;
+                            while (done < len) {
+                                done += in.transferTo(done, len - done, out);
+                            }
+                        }
+                        entries.put(hash, new long[] {pos, len});
+                        pos += len;
+                    }
+                    packed.add(f);
+                }
+                out.force(true);
+            } catch (IOException excp) {
+                throw new StorageException(excp);
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(
+                            new FileOutputStream(idxOf(gen))))) {
+                out.writeInt(IDX_MAGIC);
+                out.writeInt(entries.size());
+                for (String hash : entries.keySet()) {
+                    out.write(toRaw(hash));
+                    out.writeLong(entries.get(hash)[0]);
+                    out.writeLong(entries.get(hash)[1]);
+                }
+            } catch (IOException excp) {
+                throw new StorageException(excp);
+            }
+            publish(old, gen);
+            for (File f : packed) {
+                f.delete();
+                if (!f.getParentFile().equals(loose)) {
+                    f.getParentFile().delete();
+                }
+            }
+            return packed.size();
+        }
+    }
+
+    /** count packed objects.
+     * @return number of objects in the pack
+     * */
+    int size() {
+        return index().size();
+    }
+
+    /** get the pack file of the current generation.
+     * @return the pack file, which may not exist
+     * */
+    File file() {
+        return packOf(current());
+    }
+
+    /** delete every generation of the pack, if one was ever written. */
+    void delete() {
+        if (!dir.isDirectory()) {
+            return;
+        }
+        try (LockFile lock = LockFile.acquire(head)) {
+            String gen = current();
+            head.delete();
+            packOf(gen).delete();
+            idxOf(gen).delete();
+            opened = null;
+        }
+    }
+
+    /** write a new generation of the pack without the objects that are
+     * not kept. Offsets change, so the old generation is only dropped
+     * once the new one is published.
+     * @param keep decides, by hash, which objects stay
+     * @return number of objects dropped
+     * */
+    int retain(Predicate<String> keep) {
+        try (LockFile lock = LockFile.acquire(head)) {
+            Generation old = reopen();
+            int n = old.size();
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                if (keep.test(old.hashAt(i))) {
+                    kept += 1;
+                }
+            }
+            if (kept == n) {
+                return 0;
+            }
+            String gen = next(old);
+            try (FileChannel out = create(packOf(gen));
+                 DataOutputStream idx = new DataOutputStream(
+                         new BufferedOutputStream(
+                                 new FileOutputStream(idxOf(gen))))) {
+                idx.writeInt(IDX_MAGIC);
+                idx.writeInt(kept);
+                long pos = 0;
+                for (int i = 0; i < n; i++) {
+                    String hash = old.hashAt(i);
+                    if (!keep.test(hash)) {
+                        continue;
+                    }
+                    long offset = old.offset(i);
+                    long len = old.length(i);
+                    for (long done = 0; done < len;) {
+                        done += old.pack.transferTo(offset + done,
+                                len - done, out);
+                    }
+                    idx.write(toRaw(hash));
+                    idx.writeLong(pos);
+                    idx.writeLong(len);
+                    pos += len;
+                }
+                out.force(true);
+            } catch (IOException excp) {
+                throw new StorageException(excp);
+            }
+            publish(old, gen);
+            return n - kept;
+        }
+    }
+
+    /** get the hash of an index record.
+     * @param i record number
+     * @return hex hash string
+     * */
+    String hashAt(int i) {
+        return index().hashAt(i);
+    }
+
+    /** map the region of the pack holding an object, from the pack of
+     * the generation whose index holds it.
+     * @param hash object hash
+     * @return buffer over the stored bytes, or null if not packed
+     * */
+    private ByteBuffer slice(String hash) {
+        Generation g = holding(hash);
+        int i = g.find(hash);
+        if (i < 0) {
+            return null;
+        }
+        try {
+            return g.pack.map(FileChannel.MapMode.READ_ONLY, g.offset(i),
+                    g.length(i));
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        }
+    }
+
+    /** get the generation to look an object up in. A miss in a
+     * generation that is no longer current maps the current one.
+     * @param hash object hash
+     * @return the generation
+     * */
+    private Generation holding(String hash) {
+        Generation g = index();
+        if (g.find(hash) < 0 && !current().equals(g.name)) {
+            g = reopen();
+        }
+        return g;
+    }
+
+    /** get the generation mapped by this process.
+     * @return the generation, mapped on first use
+     * */
+    private Generation index() {
+        Generation g = opened;
+        return g == null ? reopen() : g;
+    }
+
+    /** map the current generation.
+     * @return the generation
+     * */
+    private Generation reopen() {
+        opened = open();
+        return opened;
+    }
+
+    /** map the index and open the pack of the current generation. If a
+     * writer drops the generation in between, the one it published is
+     * opened instead.
+     * @return the generation, empty if there is no pack
+     * */
+    private Generation open() {
+        while (true) {
+            String gen = current();
+            File idxFile = idxOf(gen);
+            try (FileChannel ch = FileChannel.open(idxFile.toPath())) {
+                MappedByteBuffer idx = ch.map(FileChannel.MapMode.READ_ONLY,
+                        0, ch.size());
+                if (idx.capacity() < IDX_HEADER
+                        || idx.getInt(0) != IDX_MAGIC) {
+                    throw new StorageException("Corrupt pack index %s.",
+                            idxFile);
+                }
+                return new Generation(gen, idx,
+                        FileChannel.open(packOf(gen).toPath()));
+            } catch (NoSuchFileException excp) {
+                if (current().equals(gen)) {
+                    return new Generation(gen, null, null);
+                }
+            } catch (IOException excp) {
+                throw new StorageException(excp);
+            }
+        }
+    }
+
+    /** make a new generation current and delete the one it replaces.
+     * The caller holds the lock on the pack.
+     * @param old generation being replaced
+     * @param gen new generation, fully written
+     * */
+    private void publish(Generation old, String gen) {
+        LockFile.replace(head, scratch, gen);
+        packOf(old.name).delete();
+        idxOf(old.name).delete();
+        opened = null;
+    }
+
+    /** read the name of the current generation.
+     * @return the name, empty for a pack written before packs had
+     * generations
+     * */
+    private String current() {
+        return head.isFile() ? Utils.readContentsAsString(head) : "";
+    }
+
+    /** name the generation after another.
+     * @param old the generation
+     * @return name of the next generation
+     * */
+    private static String next(Generation old) {
+        return old.name.isEmpty() ? "1"
+                : Long.toString(Long.parseLong(old.name) + 1);
+    }
+
+    /** get the pack file of a generation.
+     * @param gen generation name
+     * @return the pack file
+     * */
+    private File packOf(String gen) {
+        return Utils.join(dir, (gen.isEmpty() ? base : base + "-" + gen)
+                + ".pack");
+    }
+
+    /** get the index file of a generation.
+     * @param gen generation name
+     * @return the index file
+     * */
+    private File idxOf(String gen) {
+        return Utils.join(dir, (gen.isEmpty() ? base : base + "-" + gen)
+                + ".idx");
+    }
+
+    /** open a file for writing, emptying it.
+     * @param f the file
+     * @return open channel
+     * @throws IOException on failure
+     * */
+    private static FileChannel create(File f) throws IOException {
+        return FileChannel.open(f.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /** hex to raw hash helper.
+     * @param hash hex hash string
+     * @return raw hash bytes
+     * */
+    static byte[] toRaw(String hash) {
+        byte[] raw = new byte[hash.length() / 2];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = (byte) Integer.parseInt(
+                    hash.substring(2 * i, 2 * i + 2), 16);
+        }
+        return raw;
+    }
+
+    /** unsigned compare of raw hashes.
+     * @param a first hash
+     * @param b second hash
+     * @return negative, zero or positive as a is less, equal or greater
+     * */
+    private static int compare(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int d = (a[i] & 0xff) - (b[i] & 0xff);
+            if (d != 0) {
+                return d;
+            }
+        }
+        return 0;
+    }
+
+    /** One generation of a pack, as mapped by a reader. */
+    private static class Generation {
+        /** initialize Generation.
+         * @param gen generation name
+         * @param index mapped index, or null if there is no pack
+         * @param data open pack file, or null if there is no pack
+         * */
+        Generation(String gen, MappedByteBuffer index, FileChannel data) {
+            name = gen;
+            idx = index;
+            pack = data;
+        }
+
+        /** count the objects of this generation.
+         * @return number of objects
+         * */
+        int size() {
+            return idx == null ? 0 : idx.getInt(4);
+        }
+
+        /** get the hash of an index record.
+         * @param i record number
+         * @return hex hash string
+         * */
+        String hashAt(int i) {
+            byte[] raw = new byte[HASH_LEN];
+            idx.get(IDX_HEADER + i * RECORD_LEN, raw);
+            return Blobs.toHex(raw);
+        }
+
+        /** binary search the index for an object.
+         * @param hash object hash
+         * @return record number, or -1 if not packed
+         * */
+        int find(String hash) {
+            if (idx == null || !Blobs.HASH_NAME.matcher(hash).matches()) {
+                return -1;
+            }
+            byte[] key = toRaw(hash);
+            byte[] raw = new byte[HASH_LEN];
+            int lo = 0;
+            int hi = size() - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                idx.get(IDX_HEADER + mid * RECORD_LEN, raw);
+                int cmp = compare(raw, key);
+                if (cmp < 0) {
+                    lo = mid + 1;
+                } else if (cmp > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        /** get the offset of an object in the pack.
+         * @param i record number
+         * @return offset
+         * */
+        long offset(int i) {
+            return idx.getLong(IDX_HEADER + i * RECORD_LEN + HASH_LEN);
+        }
+
+        /** get the stored length of an object.
+         * @param i record number
+         * @return length
+         * */
+        long length(int i) {
+            return idx.getLong(IDX_HEADER + i * RECORD_LEN + HASH_LEN + 8);
+        }
+
+        /** generation name, empty for a pack written before packs had
+         * generations. */
+        private String name;
+        /** mapped index. */
+        private MappedByteBuffer idx;
+        /** open pack file. */
+        private FileChannel pack;
+    }
+
+    /** folder holding loose objects of this kind. */
+    private File loose;
+    /** folder holding the pack files. */
+    private File dir;
+    /** scratch folder of the repository. */
+    private File scratch;
+    /** base name of the pack files. */
+    private String base;
+    /** file naming the current generation. */
+    private File head;
+    /** generation mapped by this process, loaded on first lookup. */
+    private Generation opened;
+}
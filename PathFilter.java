@@ -0,0 +1,93 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+
+/** Bloom filter of the paths a commit changed, with every directory
+ * above them, so a history walk can skip commits that certainly left a
+ * file or directory alone. Ten bits per path and seven probes give
+ * about one false positive in a hundred. Probes are derived from two
+ * hashes of the UTF-8 bytes of a path, which are the same in every run.
+ * @author Yizhang Lin
+ * */
+class PathFilter {
+    /** bits per path. */
+    static final int BITS_PER_PATH = 10;
+    /** probes per path. */
+    static final int PROBES = 7;
+    /** most paths kept in a filter; commits changing more get none. */
+    static final int MAX_PATHS = 512;
+
+    /** build the filter of a set of changed files.
+     * @param files changed file paths
+     * @return filter bytes, empty if nothing changed, or null if too
+     * many paths changed to be worth filtering
+     * */
+    static byte[] of(Collection<String> files) {
+        HashSet<String> paths = new HashSet<String>();
+        for (String f : files) {
+            for (int slash = f.length(); slash > 0;
+                 slash = f.lastIndexOf('/', slash - 1)) {
+                if (!paths.add(f.substring(0, slash))) {
+                    break;
+                }
+            }
+            if (paths.size() > MAX_PATHS) {
+                return null;
+            }
+        }
+        if (paths.isEmpty()) {
+            return new byte[0];
+        }
+        byte[] bits = new byte[(paths.size() * BITS_PER_PATH + 7) / 8];
+        int n = bits.length * 8;
+        for (String p : paths) {
+            long[] h = hashes(p);
+            for (int i = 0; i < PROBES; i++) {
+                int bit = (int) Math.floorMod(h[0] + i * h[1], (long) n);
+                bits[bit >>> 3] |= 1 << (bit & 7);
+            }
+        }
+        return bits;
+    }
+
+    /** test a path against a stored filter.
+     * @param buf buffer holding the filter
+     * @param at offset of the filter
+     * @param len length of the filter in bytes
+     * @param path file or directory path
+     * @return false if the path certainly did not change
+     * */
+    static boolean mayContain(ByteBuffer buf, int at, int len, String path) {
+        if (len == 0) {
+            return false;
+        }
+        int n = len * 8;
+        long[] h = hashes(path);
+        for (int i = 0; i < PROBES; i++) {
+            int bit = (int) Math.floorMod(h[0] + i * h[1], (long) n);
+            if ((buf.get(at + (bit >>> 3)) & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** hash a path twice, with FNV-1a and with a multiply-xorshift mix.
+     * @param path the path
+     * @return two hashes, the second odd
+     * */
+    private static long[] hashes(String path) {
+        long fnv = 0xcbf29ce484222325L;
+        long mix = 0x9e3779b97f4a7c15L;
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            fnv = (fnv ^ (b & 0xff)) * 0x100000001b3L;
+            mix = (mix + (b & 0xff)) * 0xbf58476d1ce4e5b9L;
+            mix ^= mix >>> 31;
+        }
+        return new long[] {fnv & Integer.MAX_VALUE,
+            (mix & Integer.MAX_VALUE) | 1};
+    }
+}
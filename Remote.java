@@ -0,0 +1,163 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/** Named remote repositories on the local file system, kept one per
+ * line as a name and the path of its .gitlet folder. Objects of a remote
+ * are read in place; changes to a remote are made by a gitlet process
+ * started in its working directory, so its own caches and indexes stay
+ * in step.
+ * @author Yizhang Lin
+ * */
+class Remote {
+    /** name of the file listing the remotes. */
+    static final String REMOTES = "remotes";
+    /** hidden command applying a pushed bundle. */
+    static final String RECEIVE = "receive-bundle";
+
+    /** initialize Remote.
+     * @param remotesFile file listing the remotes
+     * @param workDir working directory relative paths are resolved in
+     * @param scratchDir scratch folder of the repository
+     * */
+    Remote(File remotesFile, File workDir, File scratchDir) {
+        file = remotesFile;
+        root = workDir;
+        scratch = scratchDir;
+    }
+
+    /** add a remote.
+     * @param name remote name
+     * @param path its .gitlet folder, with "/" as separator
+     * */
+    void add(String name, String path) {
+        try (LockFile lock = LockFile.acquire(file)) {
+            TreeMap<String, String> remotes = load();
+            if (remotes.containsKey(name)) {
+                throw new ConflictException(
+                        "A remote with that name already exists.");
+            }
+            remotes.put(name, path.replace("/", File.separator));
+            save(remotes);
+        }
+    }
+
+    /** remove a remote.
+     * @param name remote name
+     * */
+    void remove(String name) {
+        try (LockFile lock = LockFile.acquire(file)) {
+            TreeMap<String, String> remotes = load();
+            if (remotes.remove(name) == null) {
+                throw new NotFoundException(
+                        "A remote with that name does not exist.");
+            }
+            save(remotes);
+        }
+    }
+
+    /** find the .gitlet folder of a remote.
+     * @param name remote name
+     * @return the folder
+     * */
+    File gitDir(String name) {
+        String path = load().get(name);
+        File dir = path == null ? null : new File(path);
+        if (dir != null && !dir.isAbsolute()) {
+            dir = new File(root, path);
+        }
+        if (dir == null || !dir.isDirectory()) {
+            throw new NotFoundException("Remote directory not found.");
+        }
+        return dir.getAbsoluteFile();
+    }
+
+    /** apply a bundle to a remote and move one of its branches, in a
+     * gitlet process started in the remote working directory.
+     * @param gitDir .gitlet folder of the remote
+     * @param bundle bundle file
+     * @param branch branch to move
+     * @param expected commit the branch must be at, or null if it must
+     * not exist yet
+     * @param id commit to move it to
+     * */
+    static void receive(File gitDir, File bundle, String branch,
+                        String expected, String id) {
+        List<String> cmd = new ArrayList<String>();
+        cmd.add(Utils.join(System.getProperty("java.home"), "bin", "java")
+                .getPath());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(Main.class.getName());
+        cmd.add(RECEIVE);
+        cmd.add(bundle.getAbsolutePath());
+        cmd.add(branch);
+        cmd.add(expected == null ? "-" : expected);
+        cmd.add(id);
+        ProcessBuilder pb = new ProcessBuilder(cmd)
+                .directory(gitDir.getParentFile())
+                .redirectErrorStream(true);
+        pb.environment().remove(Trace.ENV);
+        try {
+            Process p = pb.start();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (InputStream in = p.getInputStream()) {
+                in.transferTo(output);
+            }
+            String message = output.toString(StandardCharsets.UTF_8).strip();
+            if (p.waitFor() != 0 || !message.isEmpty()) {
+                throw Utils.error(message.isEmpty()
+                        ? "Remote rejected the push." : message);
+            }
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw Utils.error("Interrupted while waiting for the remote.");
+        }
+    }
+
+    /** read the remotes.
+     * @return remote names to .gitlet folders
+     * */
+    private TreeMap<String, String> load() {
+        TreeMap<String, String> remotes = new TreeMap<String, String>();
+        if (!file.isFile()) {
+            return remotes;
+        }
+        for (String line : Utils.readContentsAsString(file).split("\n")) {
+            int space = line.indexOf(' ');
+            if (space > 0) {
+                remotes.put(line.substring(0, space),
+                        line.substring(space + 1));
+            }
+        }
+        return remotes;
+    }
+
+    /** write the remotes.
+     * @param remotes remote names to .gitlet folders
+     * */
+    private void save(TreeMap<String, String> remotes) {
+        StringBuilder sb = new StringBuilder();
+        for (String name : remotes.keySet()) {
+            sb.append(name).append(' ').append(remotes.get(name))
+                    .append('\n');
+        }
+        LockFile.replace(file, scratch, sb.toString());
+    }
+
+    /** file listing the remotes. */
+    private File file;
+    /** working directory relative paths are resolved in. */
+    private File root;
+    /** scratch folder of the repository. */
+    private File scratch;
+}
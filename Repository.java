@@ -0,0 +1,1577 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/** The gitlet repository of one working directory. Every command of the
+ * command line is a method here that returns its result instead of
+ * printing it; a method that fails throws a GitletException carrying
+ * the message the command line prints, a NotFoundException or
+ * ConflictException for a missing or conflicting object and a
+ * StorageException when reading or writing files fails. Every path is
+ * resolved against the root the repository was opened at, and each
+ * Repository object keeps its own size bounded cache of decoded commits.
+ * @author Yizhang Lin
+ * */
+public class Repository {
+
+    /** name of the metadata folder in the working directory. */
+    static final String GIT_DIR = ".gitlet";
+    /** name of the blob folder. */
+    static final String FILES = "files";
+    /** name of the commit folder. */
+    static final String COMMITS = "commit";
+    /** name of the branch head folder. */
+    static final String BRANCH_HEADS = "branchHeads";
+    /** name of the file naming the current branch. */
+    static final String HEAD = "HEAD";
+    /** name of the staged area. */
+    static final String INDEX = "index";
+    /** name of the global log. */
+    static final String ALL_LOG = "allLogs";
+    /** name of the remove marks. */
+    static final String RM_MARK = "rmMark";
+    /** init commit year. */
+    static final int START_YEAR = 1970;
+    /** most threads used to update working files. */
+    static final int IO_THREADS =
+            Math.min(8, Runtime.getRuntime().availableProcessors() * 2);
+    /** shortest commit id prefix accepted in place of a full id. */
+    static final int MIN_ID_PREFIX = 6;
+    /** length of abbreviated commit ids. */
+    static final int SHORT_ID = 7;
+    /** most bytes of encoded commits kept decoded in memory. */
+    static final long COMMIT_CACHE_BYTES = 4 << 20;
+    /** characters that make an add operand a glob. */
+    static final Pattern GLOB_CHARS = Pattern.compile("[*?\\[{]");
+
+    /** How a merge ended. */
+    public enum MergeResult {
+        /** the current branch was moved to the given branch. */
+        FAST_FORWARD,
+        /** a merge commit was made. */
+        MERGED,
+        /** a merge commit was made with conflict markers in it. */
+        CONFLICT
+    }
+
+    /** initialize Repository.
+     * @param dir root of the working directory
+     * */
+    private Repository(File dir) {
+        root = dir.getAbsoluteFile();
+        gitDir = Utils.join(root, GIT_DIR);
+        blobDir = Utils.join(gitDir, FILES);
+        commitDir = Utils.join(gitDir, COMMITS);
+        branchHeads = Utils.join(gitDir, BRANCH_HEADS);
+        curBranch = Utils.join(gitDir, HEAD);
+        indexFile = Utils.join(gitDir, INDEX);
+        rmMarkFile = Utils.join(gitDir, RM_MARK);
+        scratch = Utils.join(gitDir, LockFile.SCRATCH);
+        File packDir = Utils.join(gitDir, Pack.DIR);
+        File treeDir = Utils.join(gitDir, Tree.TREES);
+        commitPack = new Pack(commitDir, packDir, scratch, "commit");
+        treePack = new Pack(treeDir, packDir, scratch, "tree");
+        blobPack = new Pack(blobDir, packDir, scratch, "files");
+        blobs = new Blobs(blobDir, blobPack,
+                Utils.join(gitDir, Blobs.MANIFESTS), scratch);
+        trees = new Trees(treeDir, treePack);
+        commitGraph = new CommitGraph(this, gitDir, scratch);
+        allLog = new GlobalLog(Utils.join(gitDir, ALL_LOG));
+        messageIndex = new MessageIndex(Utils.join(gitDir, MessageIndex.DIR),
+                allLog, scratch);
+        workTree = new WorkTree(root);
+        watcher = new Watch(root, gitDir, workTree, scratch);
+        remotes = new Remote(Utils.join(gitDir, Remote.REMOTES), root,
+                scratch);
+    }
+
+    /** create a repository.
+     * @param dir root of the working directory
+     * @return the new repository
+     * */
+    public static Repository init(File dir) {
+        Repository repo = new Repository(dir);
+        repo.create();
+        return repo;
+    }
+
+    /** open the repository of a working directory.
+     * @param dir root of the working directory
+     * @return the repository
+     * */
+    public static Repository open(File dir) {
+        Repository repo = new Repository(dir);
+        if (!repo.gitDir.isDirectory()) {
+            throw new NotFoundException(
+                    "Not in an initialized Gitlet directory.");
+        }
+        return repo;
+    }
+
+    /** write the metadata folder of a new repository and its initial
+     * commit. */
+    private void create() {
+        if (gitDir.exists()) {
+            throw new ConflictException("A Gitlet version-control system "
+                    + "already exists in the current directory.");
+        }
+        gitDir.mkdir();
+        commitDir.mkdir();
+        blobDir.mkdir();
+        branchHeads.mkdir();
+        Date commitDt = new GregorianCalendar(START_YEAR, 0, 1).getTime();
+
+        Commit c = new Commit(commitDt, "initial commit");
+        c.setTree(trees.fromFiles(new HashMap<String, String>()));
+
+        String cHashName = writeCommit(c);
+        Utils.writeContents(Utils.join(branchHeads, "master"), cHashName);
+        Utils.writeContents(curBranch, "master");
+        commitGraph.append(cHashName, c);
+        new Index().save(indexFile, scratch);
+        String initLog = "===\ncommit " + cHashName + "\nDate: "
+                + String.format(
+                        "%1$ta %1$tb %1$te %1$tH:%1$tM:%1$tS %1$tY %1$tz",
+                commitDt)
+                + "\ninitial commit";
+        allLog.append(initLog);
+        messageIndex.add(cHashName, "initial commit");
+        new RmMark().save(rmMarkFile, scratch);
+    }
+
+    /** stage files. Every operand may be a file name or a glob over the
+     * working directory; all files are hashed in parallel and the staged
+     * area is written once at the end.
+     * @param operands file names or globs
+     * */
+    public void add(List<String> operands) {
+        List<String> names = expandPaths(operands);
+        for (String name : names) {
+            if (!Utils.join(root, name).exists()) {
+                throw new NotFoundException("File does not exist.");
+            }
+        }
+        Index snapshot = getIndex();
+        List<String> hashes = names.parallelStream()
+                .map(name -> {
+                    File f = Utils.join(root, name);
+                    String cached = snapshot.cachedHash(name, f);
+                    if (cached != null && blobs.freshen(cached, f.length())) {
+                        return cached;
+                    }
+                    return blobs.store(f);
+                })
+                .collect(Collectors.toList());
+
+        try (LockFile lock = LockFile.acquire(indexFile)) {
+            Index currIndex = getIndex();
+            Commit head = getHead();
+            RmMark rmMark = RmMark.load(rmMarkFile);
+            boolean rmChanged = false;
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i);
+                String fHashName = hashes.get(i);
+                currIndex.record(name, Utils.join(root, name), fHashName);
+                if (rmMark.getFilesToRm().remove(name)) {
+                    rmChanged = true;
+                }
+                if (fHashName.equals(fileAt(head, name))) {
+                    currIndex.getAllAddedFiles().remove(name);
+                } else {
+                    currIndex.getAllAddedFiles().put(name, fHashName);
+                }
+            }
+            if (rmChanged) {
+                rmMark.save(rmMarkFile, scratch);
+            }
+            currIndex.save(indexFile, scratch);
+        }
+    }
+
+    /** commit the staged changes.
+     * @param msg commit message
+     * @return id of the new commit
+     * */
+    public String commit(String msg) {
+        try (LockFile lock = LockFile.acquire(indexFile)) {
+            Index stageFiles = Index.load(indexFile);
+            RmMark rmMark = RmMark.load(rmMarkFile);
+            if (msg == null || msg.equals("")) {
+                throw Utils.error("Please enter a commit message.");
+            }
+            if (stageFiles.getAllAddedFiles().isEmpty()
+                    && rmMark.getFilesToRm().isEmpty()) {
+                throw Utils.error("No changes added to the commit.");
+            }
+            return makeCommit(msg, null, stageFiles, rmMark);
+        }
+    }
+
+    /** create a branch at the head commit.
+     * @param name branch name
+     * */
+    public void branch(String name) {
+        if (name.endsWith(LockFile.SUFFIX)) {
+            throw Utils.error("Invalid branch name.");
+        }
+        File newBranchHead = Utils.join(branchHeads, name);
+        if (!LockFile.compareAndSet(newBranchHead, scratch, null,
+                getHeadHashName())) {
+            throw new ConflictException(
+                    "A branch with that name already exists.");
+        }
+    }
+
+    /** check out one file.
+     * @param id full or abbreviated commit id, or null for the head
+     * @param file file name
+     * */
+    public void checkoutFile(String id, String file) {
+        file = WorkTree.normalize(file);
+        Commit c = id == null ? getHead() : readCommit(resolveCommitId(id));
+        String blob = fileAt(c, file);
+        if (blob == null) {
+            throw new NotFoundException("File does not exist in that commit.");
+        }
+        blobs.copyTo(blob, workTree.prepare(file));
+    }
+
+    /** check out a branch and make it the current branch.
+     * @param name branch name
+     * */
+    public void checkoutBranch(String name) {
+        if (!branches().contains(name)) {
+            throw new NotFoundException("No such branch exists.");
+        }
+        if (Utils.readContentsAsString(curBranch).equals(name)) {
+            throw Utils.error("No need to checkout the current branch.");
+        }
+        try (LockFile lock = LockFile.acquire(indexFile)) {
+            switchTo(getHead(), Utils.readContentsAsString(
+                    Utils.join(branchHeads, name)));
+            LockFile.replace(curBranch, scratch, name);
+        }
+    }
+
+    /** history of the current branch, walking the commit graph rather
+     * than the commits.
+     * @param limit most entries returned, or -1 for all
+     * @return log entries, newest first
+     * */
+    public List<String> log(int limit) {
+        ArrayList<String> result = new ArrayList<String>();
+        int head = commitGraph.recordOf(getHeadHashName());
+        CommitGraph graph = commitGraph.load();
+        for (int i : graph.firstParents(head, limit)) {
+            result.add(logEntry(graph, i));
+        }
+        return result;
+    }
+
+    /** history of one file or directory on the current branch: the
+     * commits that changed it relative to their first parent. Commits
+     * whose changed-path filter rules the path out are skipped without
+     * being read.
+     * @param limit most entries returned, or -1 for all
+     * @param path file or directory
+     * @return log entries, newest first
+     * */
+    public List<String> log(int limit, String path) {
+        path = WorkTree.normalize(path);
+        if (path.isEmpty()) {
+            return log(limit);
+        }
+        ArrayList<String> result = new ArrayList<String>();
+        int head = commitGraph.recordOf(getHeadHashName());
+        CommitGraph graph = commitGraph.load();
+        String known = null;
+        int knownAt = CommitGraph.NONE;
+        for (int i = head; i != CommitGraph.NONE
+                && (limit < 0 || result.size() < limit); i = graph.parent(i)) {
+            if (!graph.mayHaveChanged(i, path)) {
+                continue;
+            }
+            String now = i == knownAt ? known : entryAt(graph.id(i), path);
+            int p = graph.parent(i);
+            known = p == CommitGraph.NONE ? null : entryAt(graph.id(p), path);
+            knownAt = p;
+            if (!Objects.equals(now, known)) {
+                result.add(logEntry(graph, i));
+            }
+        }
+        return result;
+    }
+
+    /** find the last commit on the current branch that changed each of
+     * some paths, in one walk that reads only the commits whose filters
+     * let one of the paths still looked for through.
+     * @param paths files or directories, or none for every tracked file
+     * @return paths to the ids of the commits that last changed them;
+     * paths no commit changed are left out
+     * */
+    public TreeMap<String, String> lastModified(List<String> paths) {
+        TreeSet<String> pending = new TreeSet<String>();
+        for (String p : paths) {
+            pending.add(WorkTree.normalize(p));
+        }
+        if (paths.isEmpty()) {
+            pending.addAll(getHead().getFiles().keySet());
+        }
+        pending.remove("");
+        TreeMap<String, String> result = new TreeMap<String, String>();
+        int head = commitGraph.recordOf(getHeadHashName());
+        CommitGraph graph = commitGraph.load();
+        for (int i = head; i != CommitGraph.NONE && !pending.isEmpty();
+             i = graph.parent(i)) {
+            ArrayList<String> maybe = new ArrayList<String>();
+            for (String p : pending) {
+                if (graph.mayHaveChanged(i, p)) {
+                    maybe.add(p);
+                }
+            }
+            if (maybe.isEmpty()) {
+                continue;
+            }
+            String id = graph.id(i);
+            int parent = graph.parent(i);
+            for (String p : maybe) {
+                String before = parent == CommitGraph.NONE ? null
+                        : entryAt(graph.id(parent), p);
+                if (!Objects.equals(entryAt(id, p), before)) {
+                    result.put(p, id);
+                    pending.remove(p);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** every commit ever made.
+     * @return log entries, newest first
+     * */
+    public Iterator<String> globalLog() {
+        return allLog.newestFirst();
+    }
+
+    /** unstage a file, or mark it removed and delete it.
+     * @param fileToRm file name
+     * */
+    public void rm(String fileToRm) {
+        fileToRm = WorkTree.normalize(fileToRm);
+        try (LockFile lock = LockFile.acquire(indexFile)) {
+            Index currIndex = getIndex();
+            HashMap<String, String> stagedFiles = currIndex.getAllAddedFiles();
+            boolean tracked = fileAt(getHead(), fileToRm) != null;
+            if (!stagedFiles.containsKey(fileToRm) && !tracked) {
+                throw Utils.error("No reason to remove the file.");
+            }
+            if (stagedFiles.containsKey(fileToRm)) {
+                stagedFiles.remove(fileToRm);
+                currIndex.save(indexFile, scratch);
+            }
+            if (tracked) {
+                RmMark rmMark = RmMark.load(rmMarkFile);
+                rmMark.addMark(fileToRm);
+                rmMark.save(rmMarkFile, scratch);
+                workTree.delete(fileToRm);
+            }
+        }
+    }
+
+    /** find commits by message, answered from the message index.
+     * @param msg whole commit message
+     * @return commit ids, newest first
+     * */
+    public List<String> find(String msg) {
+        return found(messageIndex.exact(msg));
+    }
+
+    /** find commits whose message contains a word.
+     * @param word word to look for, in any case
+     * @return commit ids, newest first
+     * */
+    public List<String> findWord(String word) {
+        return found(messageIndex.word(word));
+    }
+
+    /** describe branches, staged and removed files and the state of the
+     * working directory.
+     * @return the status
+     * */
+    public Status status() {
+        Status s = new Status();
+        s.current = getCurrBranch();
+        s.branches.addAll(branches());
+        Index currIndex = getIndex();
+        HashMap<String, String> addedFiles = currIndex.getAllAddedFiles();
+        s.staged.addAll(addedFiles.keySet());
+        RmMark rmMark = RmMark.load(rmMarkFile);
+        s.removed.addAll(rmMark.getFilesToRm());
+
+        HashMap<String, String> headFiles = getHead().getFiles();
+        Watch.Snapshot work = watcher.snapshot(true);
+        if (findModified(currIndex, headFiles, rmMark, s.modified, work)) {
+            try (LockFile lock = LockFile.acquire(indexFile)) {
+                Index fresh = getIndex();
+                fresh.getStats().putAll(currIndex.getStats());
+                fresh.save(indexFile, scratch);
+            }
+        }
+        for (String f : work.getFiles()) {
+            if (!addedFiles.containsKey(f) && (!headFiles.containsKey(f)
+                    || rmMark.getFilesToRm().contains(f))) {
+                s.untracked.add(f);
+            }
+        }
+        return s;
+    }
+
+    /** compare versions of the tracked files. Files whose blob hashes
+     * are equal are skipped without being read, and between two commits
+     * so are whole directories whose tree hashes are equal. Working
+     * files are hashed only if the stat cache does not know them.
+     * @param from commit id, or null for the staged area
+     * @param to commit id, or null for the working directory
+     * @return a unified diff per changed file, computed as it is reached
+     * */
+    public Iterator<String> diff(String from, String to) {
+        TreeMap<String, String[]> changes = new TreeMap<String, String[]>();
+        if (to != null) {
+            trees.diff(readCommit(resolveCommitId(from)).getTree(),
+                    readCommit(resolveCommitId(to)).getTree(), "",
+                    (path, x, y) -> changes.put(path, new String[] {x, y}));
+            return diffs(changes, false);
+        }
+        Index currIndex = getIndex();
+        HashMap<String, String> staged = tracked(getHead().getFiles(),
+                currIndex, RmMark.load(rmMarkFile));
+        HashMap<String, String> base = from == null ? staged
+                : readCommit(resolveCommitId(from)).getFiles();
+        TreeSet<String> paths = new TreeSet<String>(base.keySet());
+        paths.addAll(staged.keySet());
+        for (String f : paths) {
+            File file = Utils.join(root, f);
+            String hash = null;
+            if (file.isFile()) {
+                hash = currIndex.cachedHash(f, file);
+                if (hash == null) {
+                    hash = getHashName(file);
+                }
+            }
+            if (!Objects.equals(hash, base.get(f))) {
+                changes.put(f, new String[] {base.get(f), hash});
+            }
+        }
+        return diffs(changes, true);
+    }
+
+    /** compare a commit with the staged area.
+     * @param from commit id, or null for the head commit
+     * @return a unified diff per changed file, computed as it is reached
+     * */
+    public Iterator<String> diffStaged(String from) {
+        HashMap<String, String> head = getHead().getFiles();
+        HashMap<String, String> staged = tracked(head, getIndex(),
+                RmMark.load(rmMarkFile));
+        HashMap<String, String> base = from == null ? head
+                : readCommit(resolveCommitId(from)).getFiles();
+        TreeMap<String, String[]> changes = new TreeMap<String, String[]>();
+        TreeSet<String> paths = new TreeSet<String>(base.keySet());
+        paths.addAll(staged.keySet());
+        for (String f : paths) {
+            if (!Objects.equals(base.get(f), staged.get(f))) {
+                changes.put(f, new String[] {base.get(f), staged.get(f)});
+            }
+        }
+        return diffs(changes, false);
+    }
+
+    /** delete a branch.
+     * @param name branch name
+     * */
+    public void rmBranch(String name) {
+        if (!branches().contains(name)) {
+            throw new NotFoundException(
+                    "A branch with that name does not exist.");
+        }
+        if (Utils.readContentsAsString(curBranch).equals(name)) {
+            throw Utils.error("Cannot remove the current branch.");
+        }
+        File branchToDel = Utils.join(branchHeads, name);
+        try (LockFile lock = LockFile.acquire(branchToDel)) {
+            branchToDel.delete();
+        }
+    }
+
+    /** check out a commit and move the current branch to it.
+     * @param commitId full or abbreviated commit id
+     * */
+    public void reset(String commitId) {
+        String id = resolveCommitId(commitId);
+        try (LockFile lock = LockFile.acquire(indexFile)) {
+            String old = getHeadHashName();
+            switchTo(readCommit(old), id);
+            moveHead(old, id);
+        }
+    }
+
+    /** merge a branch into the current branch.
+     * @param branch branch to merge
+     * @return how the merge ended
+     * */
+    public MergeResult merge(String branch) {
+        try (LockFile lock = LockFile.acquire(indexFile)) {
+            Index currIndex = getIndex();
+            RmMark rmMark = RmMark.load(rmMarkFile);
+            if (!currIndex.getAllAddedFiles().isEmpty()
+                    || !rmMark.getFilesToRm().isEmpty()) {
+                throw new ConflictException("You have uncommitted changes.");
+            }
+
+            if (!branches().contains(branch)) {
+                throw new NotFoundException(
+                    "A branch with that name does not exist.");
+            }
+
+            if (getCurrBranch().equals(branch)) {
+                throw Utils.error("Cannot merge a branch with itself.");
+            }
+
+            String switchToCmtStr = Utils.readContentsAsString(
+                    Utils.join(branchHeads, branch));
+            Commit switchTo = readCommit(switchToCmtStr);
+            HashMap<String, String> switchToFiles = switchTo.getFiles();
+            HashMap<String, String> stagedFiles = currIndex.getAllAddedFiles();
+            Commit head = getHead();
+            HashMap<String, String> headFiles = head.getFiles();
+            checkUntrackedExist(headFiles, stagedFiles, switchToFiles);
+
+            String headId = getHeadHashName();
+            int headRec = commitGraph.recordOf(headId);
+            int otherRec = commitGraph.recordOf(switchToCmtStr);
+            CommitGraph graph = commitGraph.load();
+            String splitId = graph.id(graph.mergeBase(headRec, otherRec));
+            if (splitId.equals(switchToCmtStr)) {
+                throw Utils.error("Given branch is an ancestor of the "
+                        + "current branch.");
+            }
+            if (splitId.equals(headId)) {
+                switchTo(head, switchToCmtStr);
+                moveHead(headId, switchToCmtStr);
+                return MergeResult.FAST_FORWARD;
+            }
+
+            HashMap<String, String> splitFiles = readCommit(splitId).getFiles();
+            TreeSet<String> allFiles = new TreeSet<String>(splitFiles.keySet());
+            allFiles.addAll(headFiles.keySet());
+            allFiles.addAll(switchToFiles.keySet());
+            boolean conflict = false;
+            for (String f : allFiles) {
+                String inSplit = splitFiles.get(f);
+                String inHead = headFiles.get(f);
+                String inOther = switchToFiles.get(f);
+                File work = Utils.join(root, f);
+                if (Objects.equals(inHead, inOther)
+                        || Objects.equals(inSplit, inOther)) {
+                    continue;
+                }
+                if (Objects.equals(inSplit, inHead)) {
+                    if (inOther == null) {
+                        rmMark.addMark(f);
+                        workTree.delete(f);
+                    } else {
+                        blobs.copyTo(inOther, workTree.prepare(f));
+                        stagedFiles.put(f, inOther);
+                        currIndex.record(f, work, inOther);
+                    }
+                    continue;
+                }
+                Utils.writeContents(workTree.prepare(f), "<<<<<<< HEAD\n",
+                        inHead == null ? new byte[0] : blobs.read(inHead),
+                        "=======\n",
+                        inOther == null ? new byte[0] : blobs.read(inOther),
+                        ">>>>>>>\n");
+                String hash = blobs.store(work);
+                stagedFiles.put(f, hash);
+                currIndex.record(f, work, hash);
+                conflict = true;
+            }
+            makeCommit("Merged " + branch + " into " + getCurrBranch() + ".",
+                    switchToCmtStr, currIndex, rmMark);
+            return conflict ? MergeResult.CONFLICT : MergeResult.MERGED;
+        }
+    }
+
+    /** add a remote repository.
+     * @param name remote name
+     * @param path its .gitlet folder, with "/" as separator
+     * */
+    public void addRemote(String name, String path) {
+        remotes.add(name, path);
+    }
+
+    /** remove a remote repository. Branches fetched from it are kept.
+     * @param name remote name
+     * */
+    public void rmRemote(String name) {
+        remotes.remove(name);
+    }
+
+    /** copy a branch of a remote into the branch "remote/branch",
+     * transferring only the commits and objects missing here.
+     * @param remote remote name
+     * @param branch branch of the remote
+     * */
+    public void fetch(String remote, String branch) {
+        File dir = remotes.gitDir(remote);
+        File theirs = Utils.join(dir, BRANCH_HEADS, branch);
+        if (!theirs.isFile()) {
+            throw new NotFoundException(
+                    "That remote does not have that branch.");
+        }
+        String want = Utils.readContentsAsString(theirs);
+        File bundle = Bundle.write(Bundle.Store.at(dir),
+                Bundle.Store.local(this), want, scratch);
+        try {
+            unbundle(bundle);
+        } finally {
+            bundle.delete();
+        }
+        File ref = Utils.join(branchHeads, remote, branch);
+        ref.getParentFile().mkdir();
+        String old = ref.isFile() ? Utils.readContentsAsString(ref) : null;
+        if (!LockFile.compareAndSet(ref, scratch, old, want)) {
+            throw new ConflictException(
+                    "Branch %s/%s was moved by another process.",
+                    remote, branch);
+        }
+    }
+
+    /** send the current branch to a branch of a remote. The remote
+     * branch must be in the history of the head commit.
+     * @param remote remote name
+     * @param branch branch of the remote
+     * */
+    public void push(String remote, String branch) {
+        File dir = remotes.gitDir(remote);
+        File theirs = Utils.join(dir, BRANCH_HEADS, branch);
+        String expected = theirs.isFile()
+                ? Utils.readContentsAsString(theirs) : null;
+        String head = getHeadHashName();
+        if (head.equals(expected)) {
+            return;
+        }
+        if (expected != null) {
+            int rec = commitGraph.recordOf(expected);
+            if (rec == CommitGraph.NONE || !commitGraph.load().isAncestor(
+                    rec, commitGraph.recordOf(head))) {
+                throw new ConflictException(
+                        "Please pull down remote changes before pushing.");
+            }
+        }
+        File bundle = Bundle.write(Bundle.Store.local(this),
+                Bundle.Store.at(dir), head, Utils.join(dir, LockFile.SCRATCH));
+        try {
+            Remote.receive(dir, bundle, branch, expected, head);
+        } finally {
+            bundle.delete();
+        }
+    }
+
+    /** fetch a branch of a remote and merge it into the current branch.
+     * @param remote remote name
+     * @param branch branch of the remote
+     * @return how the merge ended
+     * */
+    public MergeResult pull(String remote, String branch) {
+        fetch(remote, branch);
+        return merge(remote + "/" + branch);
+    }
+
+    /** store a pushed bundle and move a branch to the pushed commit.
+     * @param bundle bundle file
+     * @param branch branch to move
+     * @param expected commit the branch must be at, or null if it must
+     * not exist yet
+     * @param id commit to move it to
+     * */
+    public void receive(File bundle, String branch, String expected,
+                        String id) {
+        unbundle(bundle);
+        if (!LockFile.compareAndSet(Utils.join(branchHeads, branch), scratch,
+                expected, id)) {
+            throw new ConflictException(
+                    "Please pull down remote changes before pushing.");
+        }
+    }
+
+    /** store blobs written by older versions again, with a header.
+     * @return number of blobs converted, bytes of the old files and
+     * bytes written for them
+     * */
+    public long[] migrate() {
+        return blobs.migrate();
+    }
+
+    /** move loose commits, trees and blobs into pack files. Blobs
+     * written by older versions have no header, so they are converted
+     * first.
+     * @return number of objects packed
+     * */
+    public int pack() {
+        blobs.migrate();
+        return commitPack.repack() + treePack.repack()
+                + blobPack.repack();
+    }
+
+    /** delete objects no branch or staged file refers to.
+     * @param grace keep unreachable objects younger than this many
+     * milliseconds
+     * @return number of objects removed and bytes freed
+     * */
+    public long[] gc(long grace) {
+        try (LockFile lock = LockFile.acquire(indexFile)) {
+            return GarbageCollector.collect(this, grace);
+        }
+    }
+
+    /** rewrite metadata written with Java serialization into the binary
+     * format. Commit ids are hashes of the encoding, so every commit gets
+     * a new id and branch heads and the global log are rewritten to
+     * match. Packed commits are unpacked on the way.
+     * @return number of commits and their total size before and after
+     * */
+    public long[] convert() {
+        try (LockFile lock = LockFile.acquire(indexFile)) {
+            Index.load(indexFile).save(indexFile, scratch);
+            RmMark.load(rmMarkFile).save(rmMarkFile, scratch);
+
+            ObjectDir.shard(commitDir);
+            TreeSet<String> ids = new TreeSet<String>(commitPack.hashes());
+            ids.addAll(ObjectDir.list(commitDir));
+            HashMap<String, String> newIds = new HashMap<String, String>();
+            long before = 0;
+            long after = 0;
+            ArrayDeque<String> stack = new ArrayDeque<String>(ids);
+            while (!stack.isEmpty()) {
+                String old = stack.peek();
+                if (newIds.containsKey(old)) {
+                    stack.pop();
+                    continue;
+                }
+                File loose = ObjectDir.path(commitDir, old);
+                byte[] data = loose.isFile() ? Utils.readContents(loose)
+                        : commitPack.read(old);
+                Commit c = Commit.decode(data);
+                String p = c.getParentCommit();
+                String p2 = c.getSecondParent();
+                if (p != null && !newIds.containsKey(p)) {
+                    stack.push(p);
+                    continue;
+                }
+                if (p2 != null && !newIds.containsKey(p2)) {
+                    stack.push(p2);
+                    continue;
+                }
+                stack.pop();
+                if (p != null) {
+                    c.setParentCommit(newIds.get(p));
+                }
+                if (p2 != null) {
+                    c.setSecondParent(newIds.get(p2));
+                }
+                String nid = writeCommit(c);
+                if (!nid.equals(old)) {
+                    loose.delete();
+                }
+                newIds.put(old, nid);
+                before += data.length;
+                after += ObjectDir.path(commitDir, nid).length();
+            }
+            commitPack.delete();
+            Utils.join(gitDir, CommitGraph.GRAPH).delete();
+            commitGraph.reload();
+
+            for (String b : branches()) {
+                File head = Utils.join(branchHeads, b);
+                String id = Utils.readContentsAsString(head);
+                LockFile.compareAndSet(head, scratch, id,
+                        newIds.getOrDefault(id, id));
+            }
+            ArrayList<String> entries = new ArrayList<String>();
+            allLog.newestFirst().forEachRemaining(entries::add);
+            Utils.join(gitDir, ALL_LOG).delete();
+            for (int e = entries.size() - 1; e >= 0; e--) {
+                String[] lines = entries.get(e).split("\n", -1);
+                for (int i = 0; i < lines.length; i++) {
+                    if (lines[i].startsWith("commit ")) {
+                        String id = lines[i].substring("commit ".length());
+                        lines[i] = "commit " + newIds.getOrDefault(id, id);
+                    }
+                }
+                allLog.append(String.join("\n", lines));
+            }
+            messageIndex.build();
+            return new long[] {newIds.size(), before, after};
+        }
+    }
+
+    /** read a commit, whether cached, loose or packed.
+     * @param id commit id
+     * @return the commit object
+     * */
+    Commit readCommit(String id) {
+        Commit cached = commits.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        File loose = ObjectDir.path(commitDir, id);
+        byte[] data;
+        try (Trace.Span span = Trace.begin("read")) {
+            data = loose.isFile() ? Utils.readContents(loose)
+                    : commitPack.read(id);
+        }
+        if (data == null) {
+            throw new NotFoundException("No commit %s.", id);
+        }
+        Commit c = Commit.decode(data);
+        c.setTrees(trees);
+        commits.put(id, c, data.length);
+        return c;
+    }
+
+    /** write a commit under its id, the hash of its encoding.
+     * @param c commit to write
+     * @return the commit id
+     * */
+    String writeCommit(Commit c) {
+        c.setTrees(trees);
+        byte[] data = c.encode();
+        String id = Utils.sha1(data);
+        ObjectDir.write(commitDir, id, data);
+        commits.put(id, c, data.length);
+        return id;
+    }
+
+    /** list the branches.
+     * @return branch names, with those fetched from a remote named
+     * "remote/branch"
+     * */
+    List<String> branches() {
+        ArrayList<String> result = new ArrayList<String>();
+        for (String b : Utils.plainFilenamesIn(branchHeads)) {
+            if (!b.endsWith(LockFile.SUFFIX)) {
+                result.add(b);
+            }
+        }
+        File[] remotes = branchHeads.listFiles(File::isDirectory);
+        for (int i = 0; remotes != null && i < remotes.length; i++) {
+            for (String b : Utils.plainFilenamesIn(remotes[i])) {
+                if (!b.endsWith(LockFile.SUFFIX)) {
+                    result.add(remotes[i].getName() + "/" + b);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** store the objects of a bundle and record its new commits in the
+     * commit graph, the global log and the message index. The records
+     * are written holding the lock commits hold while writing theirs.
+     * @param bundle bundle file
+     * */
+    private void unbundle(File bundle) {
+        List<String> added = Bundle.apply(this, bundle);
+        try (LockFile lock = LockFile.acquire(indexFile)) {
+            for (String id : added) {
+                Commit c = readCommit(id);
+                commitGraph.append(id, c);
+                String merge = null;
+                if (c.getSecondParent() != null) {
+                    merge = c.getParentCommit().substring(0, SHORT_ID) + " "
+                            + c.getSecondParent().substring(0, SHORT_ID);
+                }
+                allLog.append(printLog(id, merge, c.getDate(),
+                        c.getLog()));
+                messageIndex.add(id, c.getLog());
+            }
+        }
+    }
+
+    /** drop everything read from files another process may have
+     * rewritten: decoded commits, mapped packs and the commit graph. */
+    void reload() {
+        commits.clear();
+        commitPack.reload();
+        treePack.reload();
+        blobPack.reload();
+        commitGraph.reload();
+    }
+
+    /** get the root of the working directory.
+     * @return absolute path of the working directory
+     * */
+    File root() {
+        return root;
+    }
+
+    /** get the metadata folder.
+     * @return the .gitlet folder
+     * */
+    File gitDir() {
+        return gitDir;
+    }
+
+    /** get the scratch folder temporary files are written in.
+     * @return the folder
+     * */
+    File scratch() {
+        return scratch;
+    }
+
+    /** get the blob store.
+     * @return the blobs
+     * */
+    Blobs blobs() {
+        return blobs;
+    }
+
+    /** get the tree store.
+     * @return the trees
+     * */
+    Trees trees() {
+        return trees;
+    }
+
+    /** get the commit graph.
+     * @return the graph, read on first use
+     * */
+    CommitGraph graph() {
+        return commitGraph;
+    }
+
+    /** get the packs.
+     * @return the commit, tree and blob packs, in that order
+     * */
+    Pack[] packs() {
+        return new Pack[] {commitPack, treePack, blobPack};
+    }
+
+    /** get the journal of the working directory.
+     * @return the watcher
+     * */
+    Watch watcher() {
+        return watcher;
+    }
+
+    /** get the head of a branch.
+     * @param b branch name
+     * @return id of its head commit
+     * */
+    String branchHead(String b) {
+        return Utils.readContentsAsString(Utils.join(branchHeads, b));
+    }
+
+    /** expand file, directory and glob operands into file paths.
+     * @param operands file names, directories or globs
+     * @return sorted file paths; directories are replaced by the files
+     * below them and globs by the files they match, ignored files left
+     * out of both
+     * */
+    private List<String> expandPaths(List<String> operands) {
+        TreeSet<String> names = new TreeSet<String>();
+        ArrayList<PathMatcher> globs = new ArrayList<PathMatcher>();
+        Watch.Snapshot work = null;
+        for (String op : operands) {
+            if (GLOB_CHARS.matcher(op).find()) {
+                globs.add(FileSystems.getDefault().getPathMatcher(
+                        "glob:" + WorkTree.normalize(op)));
+                continue;
+            }
+            String path = WorkTree.normalize(op);
+            if (path.isEmpty() || Utils.join(root, path).isDirectory()) {
+                work = work == null ? watcher.snapshot(false) : work;
+                names.addAll(path.isEmpty() ? work.getFiles()
+                        : work.getFiles().subSet(path + "/",
+                                path + "/" + Character.MAX_VALUE));
+            } else {
+                names.add(path);
+            }
+        }
+        if (!globs.isEmpty()) {
+            work = work == null ? watcher.snapshot(false) : work;
+            for (String f : work.getFiles()) {
+                Path p = Paths.get(f);
+                for (PathMatcher m : globs) {
+                    if (m.matches(p)) {
+                        names.add(f);
+                        break;
+                    }
+                }
+            }
+        }
+        return new ArrayList<String>(names);
+    }
+
+    /** write a commit of the head plus the staged changes, move the
+     * current branch to it and clear the staged area. The caller holds
+     * the lock on the staged area.
+     * @param msg commit message
+     * @param secondParent merged-in parent, or null
+     * @param stageFiles the staged area
+     * @param rmMark files marked removed
+     * @return id of the new commit
+     * */
+    private String makeCommit(String msg, String secondParent,
+                                     Index stageFiles, RmMark rmMark) {
+        Date commitDt = new Date();
+        Commit newCommit = new Commit(commitDt, msg);
+        String parentId = getHeadHashName();
+        newCommit.setParentCommit(parentId);
+        newCommit.setSecondParent(secondParent);
+
+        Commit parentCommit = readCommit(parentId);
+        HashMap<String, String> changes = new HashMap<String, String>();
+        ArrayList<String> filesToRm = rmMark.getFilesToRm();
+        for (String fileName : filesToRm) {
+            changes.put(fileName, null);
+        }
+        changes.putAll(stageFiles.getAllAddedFiles());
+        newCommit.setTree(trees.update(parentCommit.getTree(), changes));
+        String newCommitHash = writeCommit(newCommit);
+
+        moveHead(parentId, newCommitHash);
+        commitGraph.append(newCommitHash, newCommit);
+
+        stageFiles.getAllAddedFiles().clear();
+        stageFiles.save(indexFile, scratch);
+
+        filesToRm.clear();
+        rmMark.save(rmMarkFile, scratch);
+
+        String merge = null;
+        if (secondParent != null) {
+            merge = newCommit.getParentCommit().substring(0, SHORT_ID)
+                    + " " + secondParent.substring(0, SHORT_ID);
+        }
+        String commitLog = printLog(newCommitHash, merge, commitDt, msg);
+        allLog.append(commitLog);
+        messageIndex.add(newCommitHash, msg);
+        return newCommitHash;
+    }
+
+    /** find helper.
+     * @param ids commit ids found
+     * @return the ids, if there are any
+     * */
+    private List<String> found(List<String> ids) {
+        ids.removeIf(id -> !ObjectDir.path(commitDir, id).isFile()
+                && !commitPack.contains(id));
+        if (ids.isEmpty()) {
+            throw new NotFoundException("Found no commit with that message.");
+        }
+        return ids;
+    }
+
+    /** find tracked files whose working copy differs from the version
+     * that would be committed. Only files whose stat data changed since
+     * they were last hashed are read.
+     * @param currIndex the staged area, whose stat cache is refreshed
+     * @param headFiles files tracked by the head commit
+     * @param rmMark files marked removed
+     * @param modified receives "name (modified)" or "name (deleted)"
+     * @param work files in the working directory; files the watch
+     * journal shows unchanged are not even stat'ed
+     * @return true if the stat cache was refreshed
+     * */
+    private boolean findModified(Index currIndex,
+                                        HashMap<String, String> headFiles,
+                                        RmMark rmMark,
+                                        TreeSet<String> modified,
+                                        Watch.Snapshot work) {
+        HashMap<String, String> tracked = tracked(headFiles, currIndex,
+                rmMark);
+        boolean refreshed = false;
+        for (String f : tracked.keySet()) {
+            String hash = null;
+            if (!work.mayHaveChanged(f) && work.getFiles().contains(f)) {
+                hash = currIndex.knownHash(f);
+            }
+            File file = Utils.join(root, f);
+            if (hash == null && !file.isFile()) {
+                modified.add(f + " (deleted)");
+                if (currIndex.getStats().remove(f) != null) {
+                    refreshed = true;
+                }
+                continue;
+            }
+            if (hash == null) {
+                hash = currIndex.cachedHash(f, file);
+            }
+            if (hash == null) {
+                hash = getHashName(file);
+                currIndex.record(f, file, hash);
+                refreshed = true;
+            }
+            if (!hash.equals(tracked.get(f))) {
+                modified.add(f + " (modified)");
+            }
+        }
+        return refreshed;
+    }
+
+    /** get the files a commit would be made of.
+     * @param headFiles files tracked by the head commit
+     * @param currIndex the staged area
+     * @param rmMark files marked removed
+     * @return file paths to blob hashes
+     * */
+    private static HashMap<String, String> tracked(
+            HashMap<String, String> headFiles, Index currIndex,
+            RmMark rmMark) {
+        HashMap<String, String> tracked = new HashMap<String, String>();
+        tracked.putAll(headFiles);
+        for (String f : rmMark.getFilesToRm()) {
+            tracked.remove(f);
+        }
+        tracked.putAll(currIndex.getAllAddedFiles());
+        return tracked;
+    }
+
+    /** format a log entry from the commit graph.
+     * @param graph the commit graph
+     * @param i record number
+     * @return log entry
+     * */
+    private static String logEntry(CommitGraph graph, int i) {
+        String merge = null;
+        if (graph.secondParent(i) != CommitGraph.NONE) {
+            merge = graph.id(graph.parent(i)).substring(0, SHORT_ID)
+                    + " " + graph.id(graph.secondParent(i))
+                    .substring(0, SHORT_ID);
+        }
+        return printLog(graph.id(i), merge, graph.date(i), graph.message(i));
+    }
+
+    /** find the blob of a file in a commit, reading only the trees on
+     * its path.
+     * @param c the commit
+     * @param path file path
+     * @return blob hash, or null if the commit has no such file
+     * */
+    private String fileAt(Commit c, String path) {
+        return c.hasTree() ? trees.lookup(c.getTree(), path)
+                : c.getFiles().get(path);
+    }
+
+    /** find what a commit holds at a path.
+     * @param id commit id
+     * @param path file or directory path
+     * @return blob or tree hash, or null if there is nothing there
+     * */
+    private String entryAt(String id, String path) {
+        Commit c = readCommit(id);
+        return c.hasTree() ? trees.find(c.getTree(), path)
+                : c.getFiles().get(path);
+    }
+
+    /** diff changed files one at a time.
+     * @param changes paths to their blob hashes before and after, null
+     * where absent
+     * @param toWork true if the second version is the working file
+     * @return a unified diff per path
+     * */
+    private Iterator<String> diffs(TreeMap<String, String[]> changes,
+                                          boolean toWork) {
+        Iterator<Map.Entry<String, String[]>> it =
+                changes.entrySet().iterator();
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public String next() {
+                Map.Entry<String, String[]> e = it.next();
+                String[] h = e.getValue();
+                byte[] after;
+                if (toWork) {
+                    after = h[1] == null ? null
+                            : Utils.readContents(Utils.join(root, e.getKey()));
+                } else {
+                    after = h[1] == null ? null : blobs.read(h[1]);
+                }
+                return Diff.unified(e.getKey(),
+                        h[0] == null ? null : blobs.read(h[0]), after);
+            }
+        };
+    }
+
+    /** get the location of the head commit.
+     * @return a file indicating the location
+     * */
+    private File getHeadFile() {
+        String currBranch = Utils.readContentsAsString(curBranch);
+        return Utils.join(branchHeads, currBranch);
+    }
+
+    /** move the current branch, unless another process moved it since
+     * it was read.
+     * @param expected commit the branch was read at
+     * @param id commit to move it to
+     * */
+    private void moveHead(String expected, String id) {
+        if (!LockFile.compareAndSet(getHeadFile(), scratch, expected, id)) {
+            throw new ConflictException(
+                    "Branch %s was moved by another process.",
+                    getCurrBranch());
+        }
+    }
+
+    /** get the hash string of head commit.
+     * @return hash stirng of the head commit
+     * */
+    private String getHeadHashName() {
+        return Utils.readContentsAsString(getHeadFile());
+    }
+
+    /** get head.
+     * @return the head commit object
+     * */
+    private Commit getHead() {
+        String head = getHeadHashName();
+        return readCommit(head);
+    }
+
+    /** get hash name of a file.
+     * @param f files to hash
+     * @return hash string of the file
+     * */
+    private String getHashName(File f) {
+        Trace.count(Trace.Counter.FILES_HASHED, 1);
+        try (Trace.Span span = Trace.begin("hash");
+             InputStream in = new FileInputStream(f)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] buf = new byte[Blobs.BUF_SIZE];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+                Trace.count(Trace.Counter.BYTES_READ, n);
+            }
+            return Blobs.toHex(md.digest());
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** get the staged area.
+     * @return Index object representing the staged area
+     * */
+    Index getIndex() {
+        return Index.load(indexFile);
+    }
+
+    /** get current branch.
+     * @return branch name*/
+    private String getCurrBranch() {
+        return Utils.readContentsAsString(curBranch);
+    }
+
+    /** print log helper.
+     * @param id commit id
+     * @param merge abbreviated parent ids of a merge commit, or null
+     * @param date commit date
+     * @param msg commit message
+     * @return log information
+     * */
+    private static String printLog(String id, String merge, Date date,
+                                   String msg) {
+        return "===\ncommit " + id
+                + (merge == null ? "" : "\nMerge: " + merge) + "\nDate: "
+                + String.format(
+                        "%1$ta %1$tb %1$te %1$tH:%1$tM:%1$tS %1$tY %1$tz",
+                date)
+                + "\n" + msg;
+    }
+
+    /** resolve a commit id, which may be abbreviated to any unique
+     * prefix of at least MIN_ID_PREFIX digits. Only the shard folder of
+     * the prefix and the sorted pack index are searched.
+     * @param id full or abbreviated commit id
+     * @return full commit id
+     * */
+    private String resolveCommitId(String id) {
+        id = id.toLowerCase();
+        if (id.length() < MIN_ID_PREFIX || id.length() > Utils.UID_LENGTH
+                || !id.matches("[0-9a-f]+")) {
+            throw new NotFoundException("No commit with that id exists.");
+        }
+        TreeSet<String> found = new TreeSet<String>(
+                ObjectDir.withPrefix(commitDir, id));
+        found.addAll(commitPack.withPrefix(id, 2));
+        if (found.isEmpty()) {
+            throw new NotFoundException("No commit with that id exists.");
+        }
+        if (found.size() > 1) {
+            throw Utils.error("Ambiguous commit id.");
+        }
+        return found.first();
+    }
+
+    /** checkout helper. Only paths whose blob differs between the two
+     * commits, plus staged files, are touched in the working directory.
+     * @param currCommit current commit
+     * @param switchToCmtStr commit to switch to
+     * */
+    private void switchTo(Commit currCommit, String switchToCmtStr) {
+        Commit switchTo = readCommit(switchToCmtStr);
+        Index currIndex = getIndex();
+        HashMap<String, String> stagedFiles = currIndex.getAllAddedFiles();
+
+        TreeMap<String, String> changes = new TreeMap<String, String>();
+        trees.diff(currCommit.getTree(), switchTo.getTree(), "",
+            (path, from, to) -> {
+                if (from == null && !stagedFiles.containsKey(path)
+                        && Utils.join(root, path).isFile()
+                        && !workTree.isIgnored(path)) {
+                    throw new ConflictException(
+                            "There is an untracked file in the way;"
+                            + " delete it or add it first.");
+                }
+                changes.put(path, to);
+            });
+        for (String f : stagedFiles.keySet()) {
+            if (!changes.containsKey(f)) {
+                changes.put(f, trees.lookup(switchTo.getTree(), f));
+            }
+        }
+        stagedFiles.clear();
+
+        updateWorkFiles(changes);
+        for (Map.Entry<String, String> c : changes.entrySet()) {
+            if (c.getValue() == null) {
+                currIndex.getStats().remove(c.getKey());
+            } else {
+                currIndex.record(c.getKey(), Utils.join(root, c.getKey()),
+                        c.getValue());
+            }
+        }
+        currIndex.save(indexFile, scratch);
+    }
+
+    /** delete working files, then write working files on a bounded pool
+     * of threads, so a file may replace a directory and the other way
+     * round.
+     * @param changes file paths to blob hashes, null to delete
+     * */
+    private void updateWorkFiles(Map<String, String> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, String> c : changes.entrySet()) {
+            if (c.getValue() == null) {
+                workTree.delete(c.getKey());
+            }
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(IO_THREADS, changes.size()));
+        ArrayList<Future<?>> pending = new ArrayList<Future<?>>();
+        for (Map.Entry<String, String> c : changes.entrySet()) {
+            if (c.getValue() != null) {
+                pending.add(pool.submit(() -> blobs.copyTo(c.getValue(),
+                        workTree.prepare(c.getKey()))));
+            }
+        }
+        pool.shutdown();
+        try {
+            for (Future<?> f : pending) {
+                f.get();
+            }
+        } catch (ExecutionException excp) {
+            pool.shutdownNow();
+            Throwable cause = excp.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException excp) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw Utils.error("Interrupted while writing files.");
+        }
+    }
+
+    /** check untracked files helper.
+     * @param currentComFiles files tracked by current commit
+     * @param addedFiles files in staged area
+     * @param toFiles operation destination filse
+     * */
+    private void checkUntrackedExist(
+            HashMap<String, String> currentComFiles,
+            HashMap<String, String> addedFiles,
+            HashMap<String, String> toFiles) {
+        for (String f : toFiles.keySet()) {
+            if (!currentComFiles.containsKey(f) && !addedFiles.containsKey(f)
+                    && Utils.join(root, f).isFile()
+                    && !workTree.isIgnored(f)) {
+                throw new ConflictException(
+                        "There is an untracked file in the way;"
+                        + " delete it or add it first.");
+            }
+        }
+    }
+
+    /** Result of status. */
+    public static class Status {
+        /** current branch. */
+        private String current;
+        /** all branches. */
+        private TreeSet<String> branches = new TreeSet<String>();
+        /** staged files. */
+        private TreeSet<String> staged = new TreeSet<String>();
+        /** files marked removed. */
+        private TreeSet<String> removed = new TreeSet<String>();
+        /** modified or deleted files, with the kind of change. */
+        private TreeSet<String> modified = new TreeSet<String>();
+        /** untracked files. */
+        private TreeSet<String> untracked = new TreeSet<String>();
+
+        /** get current branch.
+         * @return branch name */
+        public String getCurrent() {
+            return current;
+        }
+
+        /** get branches.
+         * @return sorted branch names */
+        public TreeSet<String> getBranches() {
+            return branches;
+        }
+
+        /** get staged files.
+         * @return sorted file names */
+        public TreeSet<String> getStaged() {
+            return staged;
+        }
+
+        /** get removed files.
+         * @return sorted file names */
+        public TreeSet<String> getRemoved() {
+            return removed;
+        }
+
+        /** get modifications not staged for commit.
+         * @return sorted "name (modified)" or "name (deleted)" */
+        public TreeSet<String> getModified() {
+            return modified;
+        }
+
+        /** get untracked files.
+         * @return sorted file names */
+        public TreeSet<String> getUntracked() {
+            return untracked;
+        }
+
+        @Override
+        public String toString() {
+            String output = "=== Branches ===\n";
+            for (String b : branches) {
+                output += (b.equals(current) ? "*" : "") + b + "\n";
+            }
+            output += "\n=== Staged Files ===\n" + lines(staged);
+            output += "\n=== Removed Files ===\n" + lines(removed);
+            output += "\n=== Modifications Not Staged For Commit ===\n"
+                    + lines(modified);
+            output += "\n=== Untracked Files ===\n" + lines(untracked);
+            return output;
+        }
+
+        /** status print helper.
+         * @param names names to list
+         * @return one name per line
+         * */
+        private static String lines(TreeSet<String> names) {
+            StringBuilder s = new StringBuilder();
+            for (String n : names) {
+                s.append(n).append('\n');
+            }
+            return s.toString();
+        }
+    }
+
+    /** root of the working directory. */
+    private final File root;
+    /** metadata folder. */
+    private final File gitDir;
+    /** blob folder. */
+    private final File blobDir;
+    /** commit folder. */
+    private final File commitDir;
+    /** branch head folder. */
+    private final File branchHeads;
+    /** file naming the current branch. */
+    private final File curBranch;
+    /** staged area. */
+    private final File indexFile;
+    /** remove marks. */
+    private final File rmMarkFile;
+    /** scratch folder for temporary files. */
+    private final File scratch;
+    /** pack of commit objects. */
+    private final Pack commitPack;
+    /** pack of tree objects. */
+    private final Pack treePack;
+    /** pack of blobs. */
+    private final Pack blobPack;
+    /** blob store. */
+    private final Blobs blobs;
+    /** tree store. */
+    private final Trees trees;
+    /** commit graph. */
+    private final CommitGraph commitGraph;
+    /** record of every commit ever made. */
+    private final GlobalLog allLog;
+    /** index from commit messages to commit ids. */
+    private final MessageIndex messageIndex;
+    /** the working directory. */
+    private final WorkTree workTree;
+    /** journal of changes in the working directory. */
+    private final Watch watcher;
+    /** named remote repositories. */
+    private final Remote remotes;
+    /** commits recently read or written through this repository. */
+    private final ObjectCache<Commit> commits =
+            new ObjectCache<Commit>(COMMIT_CACHE_BYTES);
+}
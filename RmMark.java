@@ -1,26 +1,85 @@
 package gitlet;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.TreeSet;
 
 /** Class recording files marked removal.
  * @author Yizhang Lin */
 public class RmMark implements Serializable {
+    /** kept equal to the value computed for the original class, so that
+     * marks written with Java serialization still load. */
+    private static final long serialVersionUID = -4835036439468432361L;
+    /** record tag of encoded marks. */
+    static final String TAG = "GR";
+
     /** initialize RmMark. */
     public RmMark() {
         filesToRm = new ArrayList<String>();
     }
 
-    /** marked a file as removed.
+    /** marked a file as removed, unless it is already.
      * @param file file to mark as removed*/
     public void addMark(String file) {
-        filesToRm.add(file);
+        if (!filesToRm.contains(file)) {
+            filesToRm.add(file);
+        }
     }
     /** get names of all removed files.
      * @return all file names of removed files*/
     public ArrayList<String> getFilesToRm() {
         return filesToRm;
     }
+    /** load marks from a file.
+     * @param f file to read
+     * @return the marks
+     * */
+    public static RmMark load(File f) {
+        return Codec.decode(Utils.readContents(f), TAG, RmMark.class,
+                RmMark::read);
+    }
+
+    /** save marks to a file.
+     * @param f file to write
+     * @param scratch scratch folder of the repository holding the file
+     * */
+    public void save(File f, File scratch) {
+        LockFile.replace(f, scratch, Codec.encode(TAG, this::write));
+    }
+
+    /** write the record body, file names in order and each once, so
+     * equal marks encode to equal bytes.
+     * @param out destination
+     * @throws IOException on write failure
+     * */
+    private void write(DataOutput out) throws IOException {
+        TreeSet<String> sorted = new TreeSet<String>(filesToRm);
+        Codec.writeVarint(out, sorted.size());
+        for (String f : sorted) {
+            Codec.writeString(out, f);
+        }
+    }
+
+    /** read a record body.
+     * @param in source
+     * @param version format version
+     * @return the marks
+     * @throws IOException on malformed input
+     * */
+    private static RmMark read(DataInput in, int version)
+            throws IOException {
+        RmMark m = new RmMark();
+        long n = Codec.readVarint(in);
+        for (long i = 0; i < n; i++) {
+            m.filesToRm.add(Codec.readString(in));
+        }
+        return m;
+    }
+
     /** file names of all file removed. */
     private ArrayList<String> filesToRm;
 }
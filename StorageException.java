@@ -0,0 +1,26 @@
+package gitlet;
+
+import java.io.IOException;
+
+/** Thrown when reading or writing the repository or the working
+ * directory fails, or a stored file turns out to be corrupt.
+ * @author Yizhang Lin
+ * */
+public class StorageException extends GitletException {
+    /** initialize StorageException.
+     * @param msg message format, as for String.format
+     * @param args arguments of the format
+     * */
+    StorageException(String msg, Object... args) {
+        super(String.format(msg, args));
+    }
+
+    /** initialize StorageException from a failed file operation.
+     * @param cause the failure
+     * */
+    StorageException(IOException cause) {
+        super(cause.getMessage() == null ? cause.toString()
+                : cause.getMessage());
+        initCause(cause);
+    }
+}
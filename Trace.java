@@ -0,0 +1,210 @@
+package gitlet;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Instrumentation of a single command, turned on with a leading
+ * "--trace" or "--trace=json" operand or the GITLET_TRACE environment
+ * variable ("json" for JSON lines, anything else but "0" for a summary).
+ * Records wall time per phase and counts bytes read and written, objects
+ * decoded, files hashed and files stat'ed, then reports them on standard
+ * error. Phases nest, so "command" includes every other phase except
+ * "jvm", and phases run on several threads add up the time of each.
+ * When off, every hook is a single test of a static field.
+ * @author Yizhang Lin
+ * */
+class Trace {
+    /** operand turning tracing on. */
+    static final String FLAG = "--trace";
+    /** environment variable turning tracing on. */
+    static final String ENV = "GITLET_TRACE";
+
+    /** Things counted while tracing. */
+    enum Counter {
+        /** bytes read from files. */
+        BYTES_READ,
+        /** bytes written to files. */
+        BYTES_WRITTEN,
+        /** commits, trees and other records decoded. */
+        OBJECTS_DECODED,
+        /** working files hashed. */
+        FILES_HASHED,
+        /** files whose metadata was read. */
+        FILES_STATED
+    }
+
+    /** whether tracing is on. */
+    private static boolean on;
+    /** whether to report JSON lines instead of a summary. */
+    private static boolean json;
+    /** the traced command. */
+    private static String command;
+    /** counter values, by ordinal. */
+    private static final AtomicLongArray COUNTS =
+            new AtomicLongArray(Counter.values().length);
+    /** phase name to calls and nanoseconds. */
+    private static final ConcurrentHashMap<String, LongAdder[]> PHASES =
+            new ConcurrentHashMap<String, LongAdder[]>();
+
+    /** turn tracing on if asked for and strip the flag.
+     * @param args command line, possibly starting with the flag
+     * @param env value of the environment variable, or null
+     * @return the command line without the flag
+     * */
+    static String[] configure(String[] args, String env) {
+        String mode = env;
+        if (args.length > 0 && (args[0].equals(FLAG)
+                || args[0].startsWith(FLAG + "="))) {
+            mode = args[0].length() > FLAG.length()
+                    ? args[0].substring(FLAG.length() + 1) : "summary";
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        on = mode != null && !mode.isEmpty() && !mode.equals("0");
+        json = on && mode.equals("json");
+        command = args.length > 0 ? args[0] : "";
+        return args;
+    }
+
+    /** the command line to forward to the daemon, asking it to trace if
+     * tracing is on here.
+     * @param args command line without the flag
+     * @return the command line to forward
+     * */
+    static String[] forwarded(String[] args) {
+        if (!on) {
+            return args;
+        }
+        String[] full = new String[args.length + 1];
+        full[0] = FLAG + "=" + (json ? "json" : "summary");
+        System.arraycopy(args, 0, full, 1, args.length);
+        return full;
+    }
+
+    /** check if tracing is on, to skip work done only for counting.
+     * @return true if tracing
+     * */
+    static boolean isOn() {
+        return on;
+    }
+
+    /** record the time from JVM start until now. */
+    static void jvmStarted() {
+        if (on) {
+            add("jvm", ManagementFactory.getRuntimeMXBean().getUptime()
+                    * 1000000);
+        }
+    }
+
+    /** start timing a phase.
+     * @param phase phase name
+     * @return span to close when the phase ends
+     * */
+    static Span begin(String phase) {
+        return on ? new Span(phase) : Span.NONE;
+    }
+
+    /** add to a counter.
+     * @param c the counter
+     * @param n amount to add
+     * */
+    static void count(Counter c, long n) {
+        if (on) {
+            COUNTS.addAndGet(c.ordinal(), n);
+        }
+    }
+
+    /** print what was recorded, if tracing, and start over with tracing
+     * off.
+     * @param out stream to print to
+     * */
+    static void report(PrintStream out) {
+        if (!on) {
+            return;
+        }
+        List<String> names = new ArrayList<String>(PHASES.keySet());
+        names.sort((a, b) -> Long.compare(nanos(b), nanos(a)));
+        if (json) {
+            for (String name : names) {
+                out.printf(Locale.ROOT, "{\"command\":\"%s\",\"phase\":\"%s\","
+                        + "\"calls\":%d,\"ms\":%.3f}%n", command, name,
+                        PHASES.get(name)[0].sum(), nanos(name) / 1e6);
+            }
+            for (Counter c : Counter.values()) {
+                out.printf("{\"command\":\"%s\",\"counter\":\"%s\","
+                        + "\"value\":%d}%n", command,
+                        c.name().toLowerCase(Locale.ROOT),
+                        COUNTS.get(c.ordinal()));
+            }
+        } else {
+            out.printf("Trace of %s:%n%-16s%10s%12s%n", command,
+                    "phase", "calls", "ms");
+            for (String name : names) {
+                out.printf(Locale.ROOT, "%-16s%10d%12.3f%n", name,
+                        PHASES.get(name)[0].sum(), nanos(name) / 1e6);
+            }
+            for (Counter c : Counter.values()) {
+                out.printf("%-26s%12d%n",
+                        c.name().toLowerCase(Locale.ROOT).replace('_', ' '),
+                        COUNTS.get(c.ordinal()));
+            }
+        }
+        on = false;
+        PHASES.clear();
+        for (int i = 0; i < COUNTS.length(); i++) {
+            COUNTS.set(i, 0);
+        }
+    }
+
+    /** total time of a phase.
+     * @param phase phase name
+     * @return nanoseconds spent in the phase
+     * */
+    private static long nanos(String phase) {
+        return PHASES.get(phase)[1].sum();
+    }
+
+    /** record one call of a phase.
+     * @param phase phase name
+     * @param nanos time spent
+     * */
+    private static void add(String phase, long nanos) {
+        LongAdder[] p = PHASES.computeIfAbsent(phase,
+                k -> new LongAdder[] {new LongAdder(), new LongAdder()});
+        p[0].increment();
+        p[1].add(nanos);
+    }
+
+    /** A timed phase, ended by closing it. */
+    static class Span implements AutoCloseable {
+        /** span handed out while tracing is off. */
+        static final Span NONE = new Span(null);
+
+        /** initialize Span.
+         * @param phase phase name, or null for a span that records nothing
+         * */
+        private Span(String phase) {
+            name = phase;
+            start = phase == null ? 0 : System.nanoTime();
+        }
+
+        /** end the phase. */
+        @Override
+        public void close() {
+            if (name != null) {
+                add(name, System.nanoTime() - start);
+            }
+        }
+
+        /** phase name. */
+        private String name;
+        /** start time in nanoseconds. */
+        private long start;
+    }
+}
@@ -0,0 +1,151 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/** Content addressed directory listing. A tree maps the names in one
+ * directory to blob hashes or to the hashes of sub-trees, so commits
+ * that share a directory share its tree object. Trees are stored and
+ * walked through the Trees store of a repository.
+ * @author Yizhang Lin
+ * */
+class Tree implements Serializable {
+    /** name of the tree folder in the metadata folder. */
+    static final String TREES = "trees";
+    /** record tag of encoded trees. */
+    static final String TAG = "GT";
+
+    /** Receives the differences found by diff. */
+    interface Visitor {
+        /** called for each path whose blob differs.
+         * @param path file path
+         * @param from blob hash in the first tree, or null
+         * @param to blob hash in the second tree, or null
+         * */
+        void changed(String path, String from, String to);
+    }
+
+    /** initialize an empty Tree. */
+    Tree() {
+        entries = new TreeMap<String, Entry>();
+    }
+
+    /** initialize a Tree holding the entries of another.
+     * @param other tree to copy
+     * */
+    Tree(Tree other) {
+        entries = new TreeMap<String, Entry>(other.entries);
+    }
+
+    /** decode a tree.
+     * @param data stored bytes of the tree
+     * @return the tree
+     * */
+    static Tree decode(byte[] data) {
+        return Codec.decode(data, TAG, Tree.class, Tree::read);
+    }
+
+    /** encode this tree.
+     * @return stored bytes of the tree
+     * */
+    byte[] encode() {
+        return Codec.encode(TAG, this::write);
+    }
+
+    /** get the entries of this directory.
+     * @return entries in name order
+     * */
+    Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    /** get the entries of this directory by name.
+     * @return read-only view of the entries in name order
+     * */
+    SortedMap<String, Entry> getMap() {
+        return Collections.unmodifiableSortedMap(entries);
+    }
+
+    /** add or replace an entry.
+     * @param name name in this directory
+     * @param e the entry
+     * */
+    void put(String name, Entry e) {
+        entries.put(name, e);
+    }
+
+    /** remove an entry.
+     * @param name name in this directory
+     * */
+    void remove(String name) {
+        entries.remove(name);
+    }
+
+    /** write the record body.
+     * @param out destination
+     * @throws IOException on write failure
+     * */
+    private void write(DataOutput out) throws IOException {
+        Codec.writeVarint(out, entries.size());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Codec.writeString(out, e.getKey());
+            out.writeBoolean(e.getValue().tree);
+            Codec.writeHash(out, e.getValue().hash);
+        }
+    }
+
+    /** read a record body.
+     * @param in source
+     * @param version format version
+     * @return the tree
+     * @throws IOException on malformed input
+     * */
+    private static Tree read(DataInput in, int version) throws IOException {
+        Tree t = new Tree();
+        long n = Codec.readVarint(in);
+        for (long i = 0; i < n; i++) {
+            String name = Codec.readString(in);
+            boolean isTree = in.readBoolean();
+            t.entries.put(name, new Entry(isTree, Codec.readHash(in)));
+        }
+        return t;
+    }
+
+    /** One name in a directory. */
+    static class Entry implements Serializable {
+        /** initialize Entry.
+         * @param isTree true if the entry is a sub-tree
+         * @param h blob or tree hash
+         * */
+        Entry(boolean isTree, String h) {
+            tree = isTree;
+            hash = h;
+        }
+        /** check if this entry is a sub-tree.
+         * @return true for a sub-tree, false for a blob */
+        boolean isTree() {
+            return tree;
+        }
+
+        /** get the hash.
+         * @return blob or tree hash */
+        String getHash() {
+            return hash;
+        }
+
+        /** true if this entry is a sub-tree. */
+        private boolean tree;
+        /** blob or tree hash. */
+        private String hash;
+    }
+
+    /** entries of this directory, in name order. */
+    private TreeMap<String, Entry> entries;
+}
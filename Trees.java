@@ -0,0 +1,222 @@
+package gitlet;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Tree store of one repository, under .gitlet/trees and its pack.
+ * Trees recently read or written are kept decoded in memory.
+ * @author Yizhang Lin
+ * */
+class Trees {
+    /** most bytes of encoded trees kept decoded in memory. */
+    static final long CACHE_BYTES = 8 << 20;
+
+    /** initialize Trees.
+     * @param treeDir folder holding the loose trees
+     * @param treePack pack holding the packed trees
+     * */
+    Trees(File treeDir, Pack treePack) {
+        dir = treeDir;
+        pack = treePack;
+    }
+
+    /** read a tree.
+     * @param hash tree hash
+     * @return the tree
+     * */
+    Tree read(String hash) {
+        Tree t = cache.get(hash);
+        if (t != null) {
+            return t;
+        }
+        File loose = ObjectDir.path(dir, hash);
+        byte[] data;
+        try (Trace.Span span = Trace.begin("read")) {
+            data = loose.isFile() ? Utils.readContents(loose)
+                    : pack.read(hash);
+        }
+        if (data == null) {
+            throw new NotFoundException("No tree %s.", hash);
+        }
+        t = Tree.decode(data);
+        cache.put(hash, t, data.length);
+        return t;
+    }
+
+    /** write a tree unless it is already stored.
+     * @param t the tree
+     * @return tree hash
+     * */
+    String write(Tree t) {
+        byte[] data = t.encode();
+        String hash = Utils.sha1(data);
+        if (!ObjectDir.path(dir, hash).isFile()
+                && !pack.contains(hash)) {
+            dir.mkdir();
+            ObjectDir.write(dir, hash, data);
+        }
+        cache.put(hash, t, data.length);
+        return hash;
+    }
+
+    /** build trees for a flat file map.
+     * @param files file paths to blob hashes
+     * @return hash of the root tree
+     * */
+    String fromFiles(Map<String, String> files) {
+        return update(null, files);
+    }
+
+    /** apply changes to a tree. Only the directories on the paths of
+     * changed files are rewritten; all other sub-trees are shared.
+     * @param root hash of the root tree, or null for an empty tree
+     * @param changes file paths to new blob hashes, null to remove
+     * @return hash of the new root tree
+     * */
+    String update(String root, Map<String, String> changes) {
+        String hash = updateDir(root, changes);
+        return hash == null ? write(new Tree()) : hash;
+    }
+
+    /** look up one file in a tree, reading only the trees on its path.
+     * @param root tree hash
+     * @param path file path
+     * @return blob hash, or null if the tree has no such file
+     * */
+    String lookup(String root, String path) {
+        return lookup(root, path, true);
+    }
+
+    /** look up a file or directory in a tree, reading only the trees on
+     * its path.
+     * @param root tree hash
+     * @param path file or directory path
+     * @return blob or tree hash, or null if the tree has no such path
+     * */
+    String find(String root, String path) {
+        return lookup(root, path, false);
+    }
+
+    /** lookup helper.
+     * @param root tree hash
+     * @param path path from the root
+     * @param fileOnly true if the path must name a file
+     * @return blob or tree hash, or null if the tree has no such path
+     * */
+    private String lookup(String root, String path, boolean fileOnly) {
+        String hash = root;
+        String[] parts = path.split("/");
+        for (int i = 0; i < parts.length; i++) {
+            Tree.Entry e = read(hash).getMap().get(parts[i]);
+            boolean last = i == parts.length - 1;
+            if (e == null || (!last || fileOnly) && e.isTree() == last) {
+                return null;
+            }
+            hash = e.getHash();
+        }
+        return hash;
+    }
+
+    /** list every file under a tree.
+     * @param root tree hash
+     * @param prefix path of the tree, empty for the root
+     * @param out receives file paths and blob hashes
+     * */
+    void flatten(String root, String prefix,
+                        Map<String, String> out) {
+        for (Map.Entry<String, Tree.Entry> e : read(root).getMap().entrySet()) {
+            String path = prefix + e.getKey();
+            if (e.getValue().isTree()) {
+                flatten(e.getValue().getHash(), path + "/", out);
+            } else {
+                out.put(path, e.getValue().getHash());
+            }
+        }
+    }
+
+    /** compare two trees, skipping sub-trees with equal hashes.
+     * @param a first tree hash, or null for an empty tree
+     * @param b second tree hash, or null for an empty tree
+     * @param prefix path of the trees, empty for the root
+     * @param v receives every file that differs
+     * */
+    void diff(String a, String b, String prefix, Tree.Visitor v) {
+        if (a != null && a.equals(b)) {
+            return;
+        }
+        SortedMap<String, Tree.Entry> left = a == null
+                ? new TreeMap<String, Tree.Entry>() : read(a).getMap();
+        SortedMap<String, Tree.Entry> right = b == null
+                ? new TreeMap<String, Tree.Entry>() : read(b).getMap();
+        TreeSet<String> names = new TreeSet<String>(left.keySet());
+        names.addAll(right.keySet());
+        for (String name : names) {
+            Tree.Entry l = left.get(name);
+            Tree.Entry r = right.get(name);
+            if (l != null && r != null && l.isTree() == r.isTree()
+                    && l.getHash().equals(r.getHash())) {
+                continue;
+            }
+            String path = prefix + name;
+            String lTree = l != null && l.isTree() ? l.getHash() : null;
+            String rTree = r != null && r.isTree() ? r.getHash() : null;
+            if (lTree != null || rTree != null) {
+                diff(lTree, rTree, path + "/", v);
+            }
+            String lBlob = l != null && !l.isTree() ? l.getHash() : null;
+            String rBlob = r != null && !r.isTree() ? r.getHash() : null;
+            if (lBlob != null || rBlob != null) {
+                v.changed(path, lBlob, rBlob);
+            }
+        }
+    }
+
+    /** apply changes to one directory.
+     * @param root tree hash, or null
+     * @param changes paths relative to the directory
+     * @return new tree hash, or null if the directory became empty
+     * */
+    private String updateDir(String root, Map<String, String> changes) {
+        Tree t = root == null ? new Tree() : new Tree(read(root));
+        TreeMap<String, HashMap<String, String>> sub =
+                new TreeMap<String, HashMap<String, String>>();
+        for (Map.Entry<String, String> c : changes.entrySet()) {
+            String path = c.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                if (c.getValue() == null) {
+                    t.remove(path);
+                } else {
+                    t.put(path, new Tree.Entry(false, c.getValue()));
+                }
+            } else {
+                sub.computeIfAbsent(path.substring(0, slash),
+                        k -> new HashMap<String, String>())
+                        .put(path.substring(slash + 1), c.getValue());
+            }
+        }
+        for (Map.Entry<String, HashMap<String, String>> s : sub.entrySet()) {
+            Tree.Entry old = t.getMap().get(s.getKey());
+            String child = updateDir(old != null && old.isTree()
+                    ? old.getHash() : null, s.getValue());
+            if (child == null) {
+                t.remove(s.getKey());
+            } else {
+                t.put(s.getKey(), new Tree.Entry(true, child));
+            }
+        }
+        return t.getMap().isEmpty() ? null : write(t);
+    }
+
+    /** folder holding the loose trees. */
+    private File dir;
+    /** pack holding the packed trees. */
+    private Pack pack;
+    /** trees recently read or written through this store. */
+    private final ObjectCache<Tree> cache =
+            new ObjectCache<Tree>(CACHE_BYTES);
+}
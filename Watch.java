@@ -0,0 +1,456 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/** Journal of paths changed in the working directory, kept by a
+ * "gitlet watch" process. The journal carries a token made of a session,
+ * new for every watcher, and a sequence number bumped for every batch of
+ * events. Status remembers the token together with the files present
+ * when it last scanned, and commands later rebuild that list from the
+ * paths changed since instead of scanning again. Only status, which
+ * re-checks every changed tracked file, moves the token on, and the
+ * watcher then forgets the changes before it, so the journal holds only
+ * the paths changed since the last status. A missing or dead watcher, a
+ * different session, or an overflow since the token means a full scan.
+ * Before reading the journal a command creates a cookie file and waits
+ * for the watcher to delete it, so every change made before the command
+ * started is in the journal.
+ * @author Yizhang Lin
+ * */
+class Watch {
+    /** name of the journal in the metadata folder. */
+    static final String JOURNAL = "watch";
+    /** name of the folder of cookie files. */
+    static final String COOKIES = "watch-cookies";
+    /** name of the token of the last scan. */
+    static final String SCAN = "watch-scan";
+    /** name of the files present at the last scan, written before its
+     * token. */
+    static final String LIST = "watch-files";
+    /** milliseconds to wait for the watcher to take a cookie. */
+    static final long SYNC_TIMEOUT = 1000;
+    /** milliseconds to wait for more events before writing the journal. */
+    static final long DEBOUNCE = 5;
+    /** most paths kept before the journal is reset with an overflow. */
+    static final int MAX_PATHS = 100000;
+
+    /** initialize Watch.
+     * @param workDir root of the working directory
+     * @param gitDir metadata folder of the repository
+     * @param workTree the working directory
+     * @param scratchDir scratch folder of the repository
+     * */
+    Watch(File workDir, File gitDir, WorkTree workTree, File scratchDir) {
+        journal = Utils.join(gitDir, JOURNAL);
+        cookies = Utils.join(gitDir, COOKIES);
+        scan = Utils.join(gitDir, SCAN);
+        list = Utils.join(gitDir, LIST);
+        work = workTree;
+        root = workDir;
+        scratch = scratchDir;
+    }
+
+    /** Files in the working directory, and how they were found. */
+    static class Snapshot {
+        /** initialize Snapshot.
+         * @param present files that are not ignored
+         * @param changed paths changed since the last scan, or null after
+         * a full scan
+         * */
+        Snapshot(TreeSet<String> present, Set<String> changed) {
+            files = present;
+            dirty = changed;
+        }
+
+        /** get the files that are not ignored.
+         * @return sorted file paths
+         * */
+        TreeSet<String> getFiles() {
+            return files;
+        }
+
+        /** check if a file may have changed since the last scan.
+         * @param path file path
+         * @return false only if the journal shows the file and the
+         * directories above it unchanged
+         * */
+        boolean mayHaveChanged(String path) {
+            return dirty == null || isDirty(dirty, path);
+        }
+
+        /** files that are not ignored. */
+        private TreeSet<String> files;
+        /** paths changed since the last scan, or null. */
+        private Set<String> dirty;
+    }
+
+    /** list the files in the working directory that are not ignored,
+     * from the journal when it is current and by a scan otherwise. The
+     * token is read before the list, and written after it, so a list
+     * read is never older than its token.
+     * @param advance whether the caller re-checks every changed tracked
+     * file, and so may move the token on
+     * @return the files
+     * */
+    Snapshot snapshot(boolean advance) {
+        Journal j = sync();
+        String token = j == null || !scan.isFile() || !list.isFile() ? null
+                : Utils.readContentsAsString(scan);
+        Set<String> dirty = token == null ? null : j.changedSince(token);
+        String listed = dirty == null ? null
+                : Utils.readContentsAsString(list);
+        TreeSet<String> files = new TreeSet<String>();
+        WorkTree.Visitor add = f -> {
+            synchronized (files) {
+                files.add(f);
+            }
+        };
+        if (dirty == null) {
+            work.walk("", add);
+        } else {
+            for (String f : listed.split("\n")) {
+                if (!f.isEmpty() && !isDirty(dirty, f)) {
+                    files.add(f);
+                }
+            }
+            for (String d : dirty) {
+                File f = Utils.join(root, d);
+                if (f.isDirectory()) {
+                    work.walk(d, add);
+                } else if (f.isFile() && !work.isIgnored(d)) {
+                    files.add(d);
+                }
+            }
+        }
+        if (advance && j != null && (dirty == null || !dirty.isEmpty())) {
+            String now = String.join("\n", files);
+            try (LockFile lock = LockFile.acquire(scan)) {
+                if (!now.equals(listed)) {
+                    LockFile.replace(list, scratch, now);
+                }
+                LockFile.replace(scan, scratch, j.token());
+            }
+        }
+        return new Snapshot(files, dirty);
+    }
+
+    /** watch the working directory until the process is killed. */
+    void serve() {
+        String[] head = readHeader();
+        if (head != null && isAlive(head)) {
+            Utils.message("A gitlet watcher is already running.");
+            return;
+        }
+        session = Long.toHexString(System.currentTimeMillis()) + "-"
+                + ProcessHandle.current().pid();
+        try (WatchService ws = FileSystems.getDefault().newWatchService()) {
+            cookies.mkdir();
+            cookieKey = cookies.toPath().register(ws,
+                    StandardWatchEventKinds.ENTRY_CREATE);
+            register(ws, root.toPath());
+            flush();
+            while (true) {
+                WatchKey key = ws.take();
+                ArrayList<Path> cookies = new ArrayList<Path>();
+                seq += 1;
+                while (key != null) {
+                    handle(ws, key, cookies);
+                    key = ws.poll(DEBOUNCE, TimeUnit.MILLISECONDS);
+                }
+                flush();
+                for (Path c : cookies) {
+                    Files.deleteIfExists(c);
+                }
+            }
+        } catch (IOException excp) {
+            throw new StorageException(excp);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** wait until the watcher has seen every earlier change and read the
+     * journal.
+     * @return the journal, or null if no watcher is running or it did
+     * not answer in time
+     * */
+    private Journal sync() {
+        String[] head = readHeader();
+        if (head == null || !isAlive(head)) {
+            return null;
+        }
+        File cookie = Utils.join(cookies, ProcessHandle.current().pid()
+                + "-" + System.nanoTime());
+        try {
+            if (!cookie.createNewFile()) {
+                return null;
+            }
+            long deadline = System.currentTimeMillis() + SYNC_TIMEOUT;
+            while (cookie.exists()) {
+                if (System.currentTimeMillis() > deadline) {
+                    cookie.delete();
+                    return null;
+                }
+                Thread.sleep(1);
+            }
+        } catch (IOException excp) {
+            return null;
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        return Journal.read(journal);
+    }
+
+    /** check if a path or a directory above it is among changed paths.
+     * @param dirty changed paths
+     * @param path file path
+     * @return true if changed
+     * */
+    private static boolean isDirty(Set<String> dirty, String path) {
+        if (dirty.isEmpty()) {
+            return false;
+        }
+        for (int i = path.indexOf('/'); i > 0; i = path.indexOf('/', i + 1)) {
+            if (dirty.contains(path.substring(0, i))) {
+                return true;
+            }
+        }
+        return dirty.contains(path);
+    }
+
+    /** read the first line of the journal.
+     * @return session, sequence, overflow and process id, or null
+     * */
+    private String[] readHeader() {
+        try (BufferedReader in = new BufferedReader(new FileReader(journal))) {
+            String line = in.readLine();
+            return line == null ? null : line.split(" ");
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** check if the watcher that wrote a journal still runs.
+     * @param head first line of the journal
+     * @return true if the process is alive
+     * */
+    private static boolean isAlive(String[] head) {
+        return head.length == 4 && ProcessHandle.of(Long.parseLong(head[3]))
+                .map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    /** watch a directory and every directory below it that is not
+     * ignored.
+     * @param ws the watch service
+     * @param root directory to watch
+     * @throws IOException on failure to list a directory
+     * */
+    private void register(WatchService ws, Path root)
+            throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir,
+                    BasicFileAttributes attrs) throws IOException {
+                String rel = relative(dir);
+                if (!rel.isEmpty() && work.isIgnoredDir(rel)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                keys.put(dir.register(ws,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file,
+                                                   IOException excp) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** record the events of one signalled directory.
+     * @param ws the watch service
+     * @param key the directory's key
+     * @param taken receives cookie files to delete after the flush
+     * @throws IOException on failure to watch a new directory
+     * */
+    private void handle(WatchService ws, WatchKey key,
+                        ArrayList<Path> taken) throws IOException {
+        Path dir = key == cookieKey ? cookies.toPath() : keys.get(key);
+        for (WatchEvent<?> e : key.pollEvents()) {
+            if (e.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = seq;
+                continue;
+            }
+            Path child = dir.resolve((Path) e.context());
+            if (key == cookieKey) {
+                taken.add(child);
+                continue;
+            }
+            String rel = relative(child);
+            if (rel.equals(WorkTree.IGNORE_FILE)) {
+                overflow = seq;
+                register(ws, root.toPath());
+            }
+            if (work.isIgnored(rel)) {
+                continue;
+            }
+            changed.put(rel, seq);
+            if (e.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                register(ws, child);
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+        if (changed.size() > MAX_PATHS) {
+            changed.clear();
+            overflow = seq;
+        }
+    }
+
+    /** write the journal, leaving out the changes made before the token
+     * status last took. */
+    private void flush() {
+        String token = scan.isFile() ? Utils.readContentsAsString(scan) : "";
+        int colon = token.lastIndexOf(':');
+        if (colon > 0 && token.substring(0, colon).equals(session)) {
+            long since = Long.parseLong(token.substring(colon + 1));
+            changed.values().removeIf(s -> s <= since);
+        }
+        StringBuilder s = new StringBuilder();
+        s.append(session).append(' ').append(seq).append(' ')
+                .append(overflow).append(' ')
+                .append(ProcessHandle.current().pid()).append('\n');
+        for (Map.Entry<String, Long> e : changed.entrySet()) {
+            s.append(e.getValue()).append(' ').append(e.getKey())
+                    .append('\n');
+        }
+        LockFile.replace(journal, scratch, s.toString());
+    }
+
+    /** get the path of a file relative to the working directory.
+     * @param p the file
+     * @return path separated by "/"
+     * */
+    private String relative(Path p) {
+        return WorkTree.normalize(root.toPath().relativize(p)
+                .toString());
+    }
+
+    /** The journal as read by a command. */
+    private static class Journal {
+        /** read the journal.
+         * @param file the journal
+         * @return the journal, or null if there is none
+         * */
+        static Journal read(File file) {
+            if (!file.isFile()) {
+                return null;
+            }
+            String[] lines = Utils.readContentsAsString(file).split("\n");
+            String[] head = lines[0].split(" ");
+            Journal j = new Journal();
+            j.session = head[0];
+            j.seq = Long.parseLong(head[1]);
+            j.overflow = Long.parseLong(head[2]);
+            for (int i = 1; i < lines.length; i++) {
+                int space = lines[i].indexOf(' ');
+                j.changed.put(lines[i].substring(space + 1),
+                        Long.parseLong(lines[i].substring(0, space)));
+            }
+            return j;
+        }
+
+        /** get the token of this journal.
+         * @return session and sequence number
+         * */
+        String token() {
+            return session + ":" + seq;
+        }
+
+        /** list the paths changed after a token was taken.
+         * @param token token of an earlier journal
+         * @return changed paths, or null if the journal cannot tell
+         * */
+        Set<String> changedSince(String token) {
+            int colon = token.lastIndexOf(':');
+            if (colon < 0 || !token.substring(0, colon).equals(session)) {
+                return null;
+            }
+            long since = Long.parseLong(token.substring(colon + 1));
+            if (overflow > since) {
+                return null;
+            }
+            HashSet<String> result = new HashSet<String>();
+            for (Map.Entry<String, Long> e : changed.entrySet()) {
+                if (e.getValue() > since) {
+                    result.add(e.getKey());
+                }
+            }
+            return result;
+        }
+
+        /** watcher session. */
+        private String session;
+        /** sequence number of the last batch. */
+        private long seq;
+        /** sequence number of the last overflow. */
+        private long overflow;
+        /** changed paths and the batch they last changed in. */
+        private HashMap<String, Long> changed = new HashMap<String, Long>();
+    }
+
+    /** the journal. */
+    private File journal;
+    /** folder of cookie files. */
+    private File cookies;
+    /** token of the last scan. */
+    private File scan;
+    /** files present at the last scan. */
+    private File list;
+    /** the working directory. */
+    private WorkTree work;
+    /** root of the working directory. */
+    private File root;
+    /** scratch folder of the repository. */
+    private File scratch;
+    /** directories watched, by key. */
+    private final HashMap<WatchKey, Path> keys =
+            new HashMap<WatchKey, Path>();
+    /** key of the cookie folder. */
+    private WatchKey cookieKey;
+    /** session of this watcher. */
+    private String session;
+    /** sequence number of the current batch. */
+    private long seq = 1;
+    /** sequence number of the last overflow. */
+    private long overflow = 1;
+    /** changed paths and the batch they last changed in. */
+    private HashMap<String, Long> changed = new HashMap<String, Long>();
+}
@@ -0,0 +1,196 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** The working directory and everything below it. Paths are relative to
+ * the working directory and separated by "/". Directories are scanned in
+ * parallel, one fork per directory, and files matched by the rules in
+ * .gitletignore are skipped, ignored directories without being opened.
+ * @author Yizhang Lin
+ * */
+class WorkTree {
+    /** file holding ignore rules, in the working directory. */
+    static final String IGNORE_FILE = ".gitletignore";
+
+    /** Receives files found by a scan. Called from several threads. */
+    interface Visitor {
+        /** handle one file.
+         * @param path path of the file
+         * */
+        void file(String path);
+    }
+
+    /** initialize WorkTree.
+     * @param dir the working directory
+     * */
+    WorkTree(File dir) {
+        root = dir;
+    }
+
+    /** visit every file below a directory that is not ignored.
+     * @param dir path of the directory, empty for the working directory
+     * @param v receives the files
+     * */
+    void walk(String dir, Visitor v) {
+        Ignore rules = ignore();
+        int state = rules.start();
+        String prefix = "";
+        if (!dir.isEmpty()) {
+            if (rules.isIgnored(dir, true)) {
+                return;
+            }
+            prefix = dir + "/";
+            state = rules.step(state, prefix);
+        }
+        try (Trace.Span span = Trace.begin("list")) {
+            ForkJoinPool.commonPool().invoke(
+                    new Scan(rules, prefix, state, v));
+        }
+    }
+
+    /** check a path against the ignore rules.
+     * @param path path of a file
+     * @return true if the file or a directory above it is ignored
+     * */
+    boolean isIgnored(String path) {
+        return ignore().isIgnored(path, false);
+    }
+
+    /** check a directory against the ignore rules.
+     * @param path path of the directory
+     * @return true if the directory or one above it is ignored
+     * */
+    boolean isIgnoredDir(String path) {
+        return ignore().isIgnored(path, true);
+    }
+
+    /** turn an operand into a path relative to the working directory.
+     * @param name file name as typed, such as "./src/A.java"
+     * @return normalized path, empty for the working directory itself
+     * */
+    static String normalize(String name) {
+        String p = Paths.get(name).normalize().toString();
+        return File.separatorChar == '/' ? p
+                : p.replace(File.separatorChar, '/');
+    }
+
+    /** get a working file, creating the directories above it.
+     * @param path path of the file
+     * @return the file, ready to be written
+     * */
+    File prepare(String path) {
+        File f = Utils.join(root, path);
+        File parent = f.getParentFile();
+        if (!parent.isDirectory()) {
+            parent.mkdirs();
+        }
+        return f;
+    }
+
+    /** delete a working file and the directories above it that it
+     * leaves empty.
+     * @param path path of the file
+     * */
+    void delete(String path) {
+        File f = Utils.join(root, path);
+        if (!f.isFile() || !f.delete()) {
+            return;
+        }
+        for (int slash = path.lastIndexOf('/'); slash > 0;
+             slash = path.lastIndexOf('/')) {
+            path = path.substring(0, slash);
+            if (!Utils.join(root, path).delete()) {
+                return;
+            }
+        }
+    }
+
+    /** get the ignore rules, compiled once per version of the file.
+     * @return the rules
+     * */
+    private synchronized Ignore ignore() {
+        File f = Utils.join(root, IGNORE_FILE);
+        String stamp = f.isFile() ? f.length() + ":" + f.lastModified() : "";
+        if (rules == null || !stamp.equals(rulesStamp)) {
+            rules = new Ignore(f.isFile() ? Arrays.asList(
+                    Utils.readContentsAsString(f).split("\n"))
+                    : new ArrayList<String>());
+            rulesStamp = stamp;
+        }
+        return rules;
+    }
+
+    /** Scans one directory and forks a scan per sub-directory. */
+    private class Scan extends RecursiveAction {
+        /** initialize Scan.
+         * @param ignore the ignore rules
+         * @param dirPrefix path of the directory followed by "/", or empty
+         * @param dirState rule state reached at the directory
+         * @param v receives the files
+         * */
+        Scan(Ignore ignore, String dirPrefix, int dirState, Visitor v) {
+            rules = ignore;
+            prefix = dirPrefix;
+            state = dirState;
+            visitor = v;
+        }
+
+        @Override
+        protected void compute() {
+            ArrayList<Scan> subdirs = new ArrayList<Scan>();
+            Path dir = Utils.join(root, prefix).toPath();
+            try (DirectoryStream<Path> entries =
+                         Files.newDirectoryStream(dir)) {
+                for (Path p : entries) {
+                    String name = p.getFileName().toString();
+                    BasicFileAttributes attrs = Files.readAttributes(p,
+                            BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    Trace.count(Trace.Counter.FILES_STATED, 1);
+                    int s = rules.step(state, name);
+                    if (attrs.isDirectory()) {
+                        s = rules.step(s, '/');
+                        if (!rules.isIgnored(s)) {
+                            subdirs.add(new Scan(rules, prefix + name + "/",
+                                    s, visitor));
+                        }
+                    } else if ((attrs.isRegularFile() || attrs.isSymbolicLink()
+                            && Files.isRegularFile(p))
+                            && !rules.isIgnored(s)) {
+                        visitor.file(prefix + name);
+                    }
+                }
+            } catch (IOException excp) {
+                throw new StorageException(excp);
+            }
+            invokeAll(subdirs);
+        }
+
+        /** the ignore rules. */
+        private Ignore rules;
+        /** path of the directory followed by "/", or empty. */
+        private String prefix;
+        /** rule state reached at the directory. */
+        private int state;
+        /** receives the files. */
+        private Visitor visitor;
+    }
+
+    /** the working directory. */
+    private File root;
+    /** compiled ignore rules. */
+    private Ignore rules;
+    /** size and modification time of the ignore file they came from. */
+    private String rulesStamp;
+}
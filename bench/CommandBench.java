@@ -0,0 +1,167 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the commands, run through Main on a synthetic
+ * repository. Each call is prepared by one of the nested states, which
+ * also drops the caches of the repository last unless it is warm.
+ * @author Yizhang Lin
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandBench {
+
+    /** status.
+     * @param s the repository
+     * @param c drops the caches
+     * */
+    @Benchmark
+    public void status(RepoState s, Cold c) {
+        s.run("status");
+    }
+
+    /** log of the whole history of master.
+     * @param s the repository
+     * @param c drops the caches
+     * */
+    @Benchmark
+    public void log(RepoState s, Cold c) {
+        s.run("log");
+    }
+
+    /** find of a message from the middle of the history.
+     * @param s the repository
+     * @param c drops the caches
+     * */
+    @Benchmark
+    public void find(RepoState s, Cold c) {
+        s.run("find", SyntheticRepo.message(s.depth / 2));
+    }
+
+    /** checkout of master and a side branch in turn.
+     * @param s the repository
+     * @param t the branch to check out
+     * */
+    @Benchmark
+    public void checkoutBranch(RepoState s, Toggle t) {
+        s.run("checkout", t.branch);
+    }
+
+    /** checkout of one file from the head commit.
+     * @param s the repository
+     * @param c drops the caches
+     * */
+    @Benchmark
+    public void checkoutFile(RepoState s, Cold c) {
+        s.run("checkout", "--", SyntheticRepo.fileName(0));
+    }
+
+    /** add of the files a commit usually changes.
+     * @param s the repository
+     * @param e the files to add
+     * */
+    @Benchmark
+    public void add(RepoState s, Edited e) {
+        s.run(e.args);
+    }
+
+    /** commit of the files a commit usually changes.
+     * @param s the repository
+     * @param c the staged files
+     * */
+    @Benchmark
+    public void commit(RepoState s, Staged c) {
+        s.run("commit", "benchmark");
+    }
+
+    /** Nothing to prepare; only drops the caches. */
+    @State(Scope.Benchmark)
+    public static class Cold {
+        /** drop the caches.
+         * @param s the repository
+         * */
+        @Setup(Level.Invocation)
+        public void prepare(RepoState s) {
+            s.drop();
+        }
+    }
+
+    /** Picks the branch to check out, the one not checked out. */
+    @State(Scope.Benchmark)
+    public static class Toggle {
+        /** make sure there is a side branch.
+         * @param s the repository
+         * */
+        @Setup(Level.Trial)
+        public void fork(RepoState s) {
+            if (s.fanout == 0) {
+                s.repo.branch(SyntheticRepo.branchName(1));
+            }
+        }
+
+        /** switch to the other branch.
+         * @param s the repository
+         * */
+        @Setup(Level.Invocation)
+        public void prepare(RepoState s) {
+            branch = branch.equals("master")
+                    ? SyntheticRepo.branchName(1) : "master";
+            s.drop();
+        }
+
+        /** branch to check out next. */
+        String branch = "master";
+    }
+
+    /** Rewrites the files to add. */
+    @State(Scope.Benchmark)
+    public static class Edited {
+        /** rewrite the first files.
+         * @param s the repository
+         * */
+        @Setup(Level.Invocation)
+        public void prepare(RepoState s) {
+            List<String> changed = new ArrayList<String>();
+            changed.add("add");
+            for (int i = 0; i < s.gen.churn(); i++) {
+                s.gen.rewrite(i);
+                changed.add(SyntheticRepo.fileName(i));
+            }
+            args = changed.toArray(new String[0]);
+            s.drop();
+        }
+
+        /** the add command line. */
+        String[] args;
+    }
+
+    /** Rewrites and stages the files to commit. */
+    @State(Scope.Benchmark)
+    public static class Staged {
+        /** rewrite and add random files.
+         * @param s the repository
+         * */
+        @Setup(Level.Invocation)
+        public void prepare(RepoState s) {
+            s.repo.add(s.gen.rewriteSome());
+            s.drop();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package gitlet;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of hashing and of commit encoding, on the head commit of
+ * a synthetic repository. Decoding is also measured on the Java
+ * serialization format commits had before.
+ * @author Yizhang Lin
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrimitiveBench {
+    /** size of the data hashed by the sha1 benchmark. */
+    static final int DATA_LEN = 64 * 1024;
+
+    /** read the head commit and encode it both ways.
+     * @param s the repository
+     * */
+    @Setup(Level.Trial)
+    public void prepare(RepoState s) {
+        data = new byte[DATA_LEN];
+        new Random(s.seed).nextBytes(data);
+        sample = s.repo.readCommit(s.repo.branchHead("master"));
+        encoded = sample.encode();
+        Commit legacy = new Commit(sample.getDate(), sample.getLog());
+        legacy.setParentCommit(sample.getParentCommit());
+        legacy.getFiles().putAll(sample.getFiles());
+        serialized = Utils.serialize(legacy);
+    }
+
+    /** sha1 of random data.
+     * @return the hash
+     * */
+    @Benchmark
+    public String sha1() {
+        return Utils.sha1(data);
+    }
+
+    /** encoding of a commit.
+     * @return its bytes
+     * */
+    @Benchmark
+    public byte[] commitEncode() {
+        return sample.encode();
+    }
+
+    /** decoding of a commit.
+     * @return the commit
+     * */
+    @Benchmark
+    public Commit commitDecode() {
+        return Commit.decode(encoded);
+    }
+
+    /** decoding of a commit in the Java serialization format.
+     * @return the commit
+     * */
+    @Benchmark
+    public Commit commitDecodeSerialized() {
+        return Commit.decode(serialized);
+    }
+
+    /** data hashed by the sha1 benchmark. */
+    private byte[] data;
+    /** the head commit. */
+    private Commit sample;
+    /** its encoding. */
+    private byte[] encoded;
+    /** its Java serialization. */
+    private byte[] serialized;
+}
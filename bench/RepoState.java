@@ -0,0 +1,110 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** A synthetic repository in a temporary directory, generated once per
+ * fork from the parameters, which can be set with -p, and deleted at
+ * the end. Commands print to a discarded stream meanwhile.
+ * @author Yizhang Lin
+ * */
+@State(Scope.Benchmark)
+public class RepoState {
+    /** number of tracked files. */
+    @Param("1000")
+    public int files;
+    /** size of each file in bytes. */
+    @Param("4096")
+    public int size;
+    /** number of commits on master after the first. */
+    @Param("100")
+    public int depth;
+    /** number of side branches. */
+    @Param("4")
+    public int fanout;
+    /** seed of the contents. */
+    @Param("1")
+    public long seed;
+    /** whether caches are kept between calls, as the daemon does,
+     * rather than dropped, as every command runs in a fresh process. */
+    @Param("false")
+    public boolean warm;
+
+    /** generate the repository.
+     * @throws IOException if the temporary directory cannot be made
+     * */
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        root = temporary();
+        gen = new SyntheticRepo(files, size, depth, fanout, seed);
+        repo = gen.generate(root);
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /** delete the repository.
+     * @throws IOException if a file cannot be deleted
+     * */
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        System.setOut(out);
+        delete(root);
+    }
+
+    /** drop the caches of the repository, unless they are kept. */
+    void drop() {
+        if (!warm) {
+            repo.reload();
+        }
+    }
+
+    /** run a command on the repository.
+     * @param args command and operands
+     * */
+    void run(String... args) {
+        Main.run(repo, root, args);
+    }
+
+    /** make an empty temporary directory.
+     * @return the directory
+     * @throws IOException if it cannot be made
+     * */
+    static File temporary() throws IOException {
+        return Files.createTempDirectory("gitlet-bench").toFile();
+    }
+
+    /** delete a directory and everything under it.
+     * @param dir the directory
+     * @throws IOException if a file cannot be deleted
+     * */
+    static void delete(File dir) throws IOException {
+        try (Stream<Path> all = Files.walk(dir.toPath())) {
+            for (Path p : (Iterable<Path>) all.sorted(
+                    Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /** the generator, which also makes later changes. */
+    SyntheticRepo gen;
+    /** the repository. */
+    Repository repo;
+    /** root of its working directory. */
+    File root;
+    /** standard output while the benchmarks run. */
+    private PrintStream out;
+}
@@ -0,0 +1,177 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmark of storing successive versions of a large file of random
+ * bytes in an empty repository, either appended to or edited in a few
+ * places. Besides the stores per second it reports, as secondary
+ * results, the bytes of the versions stored and the bytes they added
+ * to the store per second; their ratio is what the chunk store
+ * deduplicated.
+ * @author Yizhang Lin
+ * */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StoreBench {
+    /** initial size of the file. */
+    static final int LARGE_FILE = 16 << 20;
+    /** bytes appended per version by the append workload. */
+    static final int APPEND_LEN = 64 << 10;
+    /** insertions per version by the edit workload. */
+    static final int EDITS = 8;
+    /** bytes per insertion of the edit workload. */
+    static final int EDIT_LEN = 100;
+
+    /** how each version changes: "append" or "edit". */
+    @Param({"append", "edit"})
+    public String workload;
+    /** seed of the file contents and changes. */
+    @Param("1")
+    public long seed;
+
+    /** make the repository and the first version.
+     * @throws IOException if the temporary directory cannot be made
+     * */
+    @Setup(Level.Trial)
+    public void init() throws IOException {
+        root = RepoState.temporary();
+        repo = Repository.init(root);
+        random = new Random(seed);
+        version = new byte[LARGE_FILE];
+        random.nextBytes(version);
+        file = Utils.join(root, "large.bin");
+        loose = Utils.join(repo.gitDir(), Repository.FILES);
+    }
+
+    /** delete the repository.
+     * @throws IOException if a file cannot be deleted
+     * */
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        RepoState.delete(root);
+    }
+
+    /** write the next version. */
+    @Setup(Level.Invocation)
+    public void change() {
+        version = workload.equals("append") ? append(version)
+                : edit(version);
+        Utils.writeContents(file, version);
+        before = storedBytes();
+    }
+
+    /** count the last version and what it added to the store.
+     * @param bytes the counters
+     * */
+    @TearDown(Level.Invocation)
+    public void count(Bytes bytes) {
+        bytes.logical += version.length;
+        bytes.stored += storedBytes() - before;
+    }
+
+    /** store the current version.
+     * @return its hash
+     * */
+    @Benchmark
+    public String store() {
+        return repo.blobs().store(file);
+    }
+
+    /** Bytes stored, reported per second with the results. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        /** bytes of the versions stored. */
+        public long logical;
+        /** bytes added to the store. */
+        public long stored;
+
+        /** start counting afresh. */
+        @Setup(Level.Iteration)
+        public void reset() {
+            logical = 0;
+            stored = 0;
+        }
+    }
+
+    /** append random bytes.
+     * @param old the current version
+     * @return the next version
+     * */
+    private byte[] append(byte[] old) {
+        byte[] tail = new byte[APPEND_LEN];
+        random.nextBytes(tail);
+        byte[] more = Arrays.copyOf(old, old.length + APPEND_LEN);
+        System.arraycopy(tail, 0, more, old.length, APPEND_LEN);
+        return more;
+    }
+
+    /** insert random bytes at random places.
+     * @param old the current version
+     * @return the next version
+     * */
+    private byte[] edit(byte[] old) {
+        byte[] edited = old;
+        byte[] insert = new byte[EDIT_LEN];
+        for (int i = 0; i < EDITS; i++) {
+            random.nextBytes(insert);
+            int at = random.nextInt(edited.length);
+            byte[] next = new byte[edited.length + EDIT_LEN];
+            System.arraycopy(edited, 0, next, 0, at);
+            System.arraycopy(insert, 0, next, at, EDIT_LEN);
+            System.arraycopy(edited, at, next, at + EDIT_LEN,
+                    edited.length - at);
+            edited = next;
+        }
+        return edited;
+    }
+
+    /** total size of the loose blobs.
+     * @return bytes
+     * */
+    private long storedBytes() {
+        long total = 0;
+        for (String h : ObjectDir.list(loose)) {
+            total += ObjectDir.path(loose, h).length();
+        }
+        return total;
+    }
+
+    /** the repository. */
+    private Repository repo;
+    /** root of its working directory. */
+    private File root;
+    /** the file stored. */
+    private File file;
+    /** directory of the loose blobs. */
+    private File loose;
+    /** source of the contents and changes. */
+    private Random random;
+    /** the current version. */
+    private byte[] version;
+    /** size of the loose blobs before the last store. */
+    private long before;
+}
@@ -0,0 +1,142 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Generator of synthetic repositories for benchmarks. The same
+ * parameters and seed always produce the same files, contents, messages
+ * and branch layout; only commit dates and therefore ids differ.
+ * Master gets a chain of commits, each rewriting a fixed share of the
+ * files, and side branches fork off at evenly spaced points of that
+ * chain with one commit each.
+ * @author Yizhang Lin
+ * */
+class SyntheticRepo {
+    /** share of the files rewritten by each commit, in percent. */
+    static final int CHURN_PERCENT = 1;
+    /** characters per line of generated text. */
+    static final int LINE_LEN = 60;
+
+    /** initialize SyntheticRepo.
+     * @param fileCount number of tracked files
+     * @param fileSize size of each file in bytes
+     * @param depth number of commits on master after the first
+     * @param fanout number of side branches
+     * @param seed seed of the contents
+     * */
+    SyntheticRepo(int fileCount, int fileSize, int depth, int fanout,
+                  long seed) {
+        files = fileCount;
+        size = fileSize;
+        commits = depth;
+        branches = fanout;
+        random = new Random(seed);
+    }
+
+    /** name of a generated file.
+     * @param i file number
+     * @return file name
+     * */
+    static String fileName(int i) {
+        return String.format("f%06d.txt", i);
+    }
+
+    /** name of a generated side branch.
+     * @param i branch number, from 1
+     * @return branch name
+     * */
+    static String branchName(int i) {
+        return "side-" + i;
+    }
+
+    /** message of a generated master commit.
+     * @param i commit number, from 1
+     * @return commit message
+     * */
+    static String message(int i) {
+        return "commit " + i;
+    }
+
+    /** number of files each commit rewrites.
+     * @return files per commit
+     * */
+    int churn() {
+        return Math.max(1, files * CHURN_PERCENT / 100);
+    }
+
+    /** create the repository in a working directory, which must not
+     * hold one yet. Files rewritten later are written there too.
+     * @param dir root of the working directory
+     * @return the repository, on master
+     * */
+    Repository generate(File dir) {
+        root = dir;
+        Repository repo = Repository.init(dir);
+        ArrayList<String> all = new ArrayList<String>();
+        for (int i = 0; i < files; i++) {
+            all.add(fileName(i));
+            rewrite(i);
+        }
+        repo.add(all);
+        repo.commit(message(0));
+        int spacing = commits / (branches + 1);
+        int forked = 0;
+        for (int c = 1; c <= commits; c++) {
+            if (forked < branches && spacing > 0 && c % spacing == 0) {
+                forked += 1;
+                String side = branchName(forked);
+                repo.branch(side);
+                repo.checkoutBranch(side);
+                repo.add(rewriteSome());
+                repo.commit("side " + forked);
+                repo.checkoutBranch("master");
+            }
+            repo.add(rewriteSome());
+            repo.commit(message(c));
+        }
+        for (forked += 1; forked <= branches; forked++) {
+            repo.branch(branchName(forked));
+        }
+        return repo;
+    }
+
+    /** rewrite randomly chosen files with new contents.
+     * @return names of the rewritten files
+     * */
+    List<String> rewriteSome() {
+        ArrayList<String> names = new ArrayList<String>();
+        for (int k = 0; k < churn(); k++) {
+            int i = random.nextInt(files);
+            rewrite(i);
+            names.add(fileName(i));
+        }
+        return names;
+    }
+
+    /** fill a file with new random text.
+     * @param i file number
+     * */
+    void rewrite(int i) {
+        byte[] text = new byte[size];
+        for (int j = 0; j < size; j++) {
+            text[j] = (j + 1) % (LINE_LEN + 1) == 0 ? (byte) '\n'
+                    : (byte) ('a' + random.nextInt(26));
+        }
+        Utils.writeContents(Utils.join(root, fileName(i)), text);
+    }
+
+    /** number of tracked files. */
+    private int files;
+    /** size of each file in bytes. */
+    private int size;
+    /** number of commits on master after the first. */
+    private int commits;
+    /** number of side branches. */
+    private int branches;
+    /** source of file contents. */
+    private Random random;
+    /** root of the working directory of the generated repository. */
+    private File root;
+}